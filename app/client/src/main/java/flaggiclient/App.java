@@ -46,13 +46,10 @@ import javax.swing.SwingUtilities;
 import flaggiclient.common.AppOptions;
 import flaggiclient.common.Client;
 import flaggiclient.common.Client.ServerMessageHandeler;
-import flaggiclient.common.Client.ServerRequests;
-import flaggiclient.common.Client.ServerResponses;
 import flaggiclient.common.Logger;
+import flaggiclient.common.MapCache;
 import flaggiclient.common.Sprite;
 import flaggiclient.constants.WidgetTags;
-import flaggiclient.sctructs.ClientStruct;
-import flaggiclient.sctructs.GameDataStruct;
 import flaggiclient.ui.Background;
 import flaggiclient.ui.Bullet;
 import flaggiclient.ui.ConfirmationWindow;
@@ -67,6 +64,7 @@ import flaggiclient.ui.PauseMenu;
 import flaggiclient.ui.Player;
 import flaggiclient.ui.ToastManager;
 import flaggiclient.ui.Tree;
+import flaggishared.common.ColliderIndex;
 import flaggishared.common.GPanel;
 import flaggishared.common.GPanel.Interactable;
 import flaggishared.common.GPanel.InteractableHandler;
@@ -74,7 +72,15 @@ import flaggishared.common.GPanel.Renderable;
 import flaggishared.common.GPanel.Scrollable;
 import flaggishared.common.GPanel.Typable;
 import flaggishared.common.MapData;
+import flaggishared.common.MapPayload;
 import flaggishared.common.MapData.ObjectData;
+import flaggishared.common.PlayerMovement;
+import flaggishared.network.BulletSpawn;
+import flaggishared.network.ClientInput;
+import flaggishared.network.PlayerState;
+import flaggishared.network.PlayerState.Animation;
+import flaggishared.network.Snapshot;
+import flaggishared.network.TcpCodec;
 import flaggishared.util.ImageUtil;
 import flaggishared.util.ScreenUtil;
 import flaggishared.common.PersistentValue;
@@ -94,6 +100,8 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
     public static final Logger LOGGER = Logger.getLogger(getApplicationDataFolder() + File.separator + "logs" + File.separator + "app.log"); // TODO Fix lobby
     public static final int TCP_PORT = 54321;
     public static final boolean SHOW_HITBOXES = false;
+    private static final int INPUT_HISTORY_SIZE = 64; // About a second of inputs, must be a power of two
+    private static final int MAX_EXTRAPOLATION_MS = 100; // Remote players stop after this long without a snapshot
 
     /////////////////
     // Variables
@@ -102,17 +110,25 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
     private Client localClient;
     private Player localPlayer;
     private String username, serverIP;
-    private int clientID, health, speed;
+    private int clientID, health, speed, inputButtons, inputSequence, eventSequence, resyncSequence, interpolationDelay;
     private GPanel gpanel;
     private GameLoop gameLoop;
     private PersistentValue<AppOptions> appOptions;
     private ArrayList<KeyEvent> pressedKeys;
     private ArrayList<Bullet> quedPlayerObjects;
+    private ClientInput localInput;
+    private int[] inputHistory;
+    private Map<Integer, String> playerNames, playerSkins;
+    private Map<Long, Bullet> bullets;
     private ToastManager toasts;
     private ConfirmationWindow yesnoToasts;
     private int[] pos, windowSize;
     private boolean movementEnabled, paused;
     private MapData currentMap;
+    private ColliderIndex obstacles;
+    private MapCache mapCache;
+    private String pendingMapHash;
+    private boolean pendingMapFirst;
 
     /////////////////
     // Main & Constructor
@@ -154,17 +170,24 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
         if (this.appOptions.get() == null) {
             this.appOptions.set(getDefaultOptions());
         }
+        this.interpolationDelay = Math.max(0, this.appOptions.get().interpolationDelay);
 
         // ------ Initialize
         this.windowSize = ScreenUtil.getScreenDimensions();
         this.pos = new int[2];
         this.pos[0] = 0;
         this.pos[1] = 0;
-        this.speed = 10;
+        this.speed = PlayerMovement.SPEED;
         this.movementEnabled = false;
         this.paused = false;
         this.pressedKeys = new ArrayList<KeyEvent>();
         this.quedPlayerObjects = new ArrayList<Bullet>();
+        this.localInput = new ClientInput();
+        this.inputHistory = new int[INPUT_HISTORY_SIZE];
+        this.playerNames = new HashMap<Integer, String>();
+        this.playerSkins = new HashMap<Integer, String>();
+        this.bullets = new HashMap<Long, Bullet>();
+        this.mapCache = new MapCache(new File(getApplicationDataFolder() + File.separator + "maps"));
         this.toasts = new ToastManager();
         this.yesnoToasts = new ConfirmationWindow();
         printHeader();
@@ -253,13 +276,15 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
         }
 
         // ------ Initialize client & change UI
-        this.localClient = new Client(username, serverAddress, this);
+        this.localClient = new Client(username, skinName, serverAddress, this);
         this.clientID = this.localClient.getId();
+        this.eventSequence = 0; // Bullet events are numbered per connection
+        this.resyncSequence = 0;
         this.localPlayer = new Player(new int[] { ScreenUtil.getScreenDimensions()[0] / 2, ScreenUtil.getScreenDimensions()[1] / 2 }, username, skinName, this.clientID);
         this.gpanel.add(this.localPlayer);
         this.gpanel.toggleWidgetsVisibility(false);
         this.gpanel.add(new LobbyInviteScreen(this, () -> {
-            this.localClient.sendTCPMessageToServer(ServerRequests.GET_IDLE_CLIENTS);
+            this.localClient.sendTCPMessageToServer(TcpCodec.encode(TcpCodec.OP_GET_IDLE));
         }));
         this.gpanel.toggleTaggedWidgetsVisibility(WidgetTags.LOBBY, true);
 
@@ -270,15 +295,61 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
         LOGGER.addLog("Game loop started");
     }
 
+    /**
+     * Handles the server starting a match. The map is loaded from the map cache,
+     * and only requested from the server if it isn't cached.
+     *
+     * @param mapHash - content hash of the map.
+     * @param first   - {@code true} if the local player spawns at the first
+     *                spawnpoint.
+     */
+    private void handleEnterGame(String mapHash, boolean first) {
+        byte[] data = this.mapCache.load(mapHash);
+        MapData map = data == null ? null : MapPayload.decode(data);
+        if (map != null) {
+            enterGame(map, first);
+            return;
+        }
+        this.pendingMapHash = mapHash;
+        this.pendingMapFirst = first;
+        this.localClient.sendTCPMessageToServer(TcpCodec.encodeGetMap(mapHash));
+        LOGGER.addLog("Map " + mapHash + " isn't cached, requesting it from the server.");
+    }
+
+    /**
+     * Handles the map data requested when entering a match. The data is cached,
+     * and the match is entered.
+     *
+     * @param mapHash - content hash of the map.
+     * @param data    - compressed map data.
+     */
+    private void handleMapData(String mapHash, byte[] data) {
+        if (!mapHash.equals(this.pendingMapHash) || !mapHash.equals(MapPayload.hash(data))) {
+            LOGGER.addLog("Received unexpected map data: " + mapHash);
+            return;
+        }
+        this.pendingMapHash = null;
+        MapData map = MapPayload.decode(data);
+        if (map == null) {
+            LOGGER.addLog("Received invalid map data: " + mapHash);
+            return;
+        }
+        this.mapCache.store(mapHash, data);
+        enterGame(map, this.pendingMapFirst);
+    }
+
     /**
      * Enters a match.
      *
+     * @param map   - map data, as sent by the server.
+     * @param first - {@code true} if the local player spawns at the first
+     *              spawnpoint.
      */
-    public void enterGame(String message) {
-        String[] parts = message.split("/");
-        String jsonMapData = parts[1];
-        boolean first = parts[2].equals("true");
-        this.currentMap = PersistentValue.fromJson(jsonMapData, MapData.class).scaleMap(Sprite.SPRITE_SCALING);
+    public void enterGame(MapData map, boolean first) {
+        this.currentMap = map.scaleMap(Sprite.SPRITE_SCALING);
+        this.obstacles = new ColliderIndex(this.currentMap, Sprite.SPRITE_SCALING);
+        this.localClient.resetSnapshots();
+        this.localClient.sendTCPMessageToServer(TcpCodec.encodeViewSize(this.windowSize[0], this.windowSize[1], this.interpolationDelay));
 
         // ---- Remove old widgets
         for (Floor f : this.gpanel.getWidgetsOfClass(Floor.class)) {
@@ -290,6 +361,7 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
         for (Flag f : this.gpanel.getWidgetsOfClass(Flag.class)) {
             this.gpanel.remove(f);
         }
+        removeAllBullets();
 
         // ---- Add new widgets
         this.gpanel.add(new Floor(new int[] { this.currentMap.getWidth(), this.currentMap.getHeight() }));
@@ -327,7 +399,9 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
             this.localClient.disconnectFromServer();
         try {
             if (this.username != null && this.serverIP != null) {
-                this.appOptions.set(new AppOptions(this.username, this.serverIP));
+                AppOptions options = new AppOptions(this.username, this.serverIP);
+                options.interpolationDelay = this.appOptions.get().interpolationDelay;
+                this.appOptions.set(options);
             }
             this.appOptions.save();
             LOGGER.addLog("Menu fields data saved succesfully.");
@@ -351,30 +425,50 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
     }
 
     @Override
-    public void handleMessage(String message) {
-        if (ServerResponses.isLobbyList(message) != null) {
-            String data = ServerResponses.isLobbyList(message);
-            updateLobbyList(data);
-        } else if (ServerResponses.isDied(message)) {
-            int[] pos = new int[2];
-            pos[0] = Integer.parseInt(message.split(":")[1].split(",")[0]);
-            pos[1] = Integer.parseInt(message.split(":")[1].split(",")[1]);
-            die(pos);
-        } else if (ServerResponses.isEnterGame(message)) {
-            System.out.println("Enter game: " + message);
-            enterGame(message);
-        } else if (message.equals(ServerResponses.GO_IDLE)) {
-            goIdle();
-        } else if (message.equals(ServerResponses.FLAG_GRAB)) {
-            localPlayer.hasFlag(true);
-        } else {
-            LOGGER.addLog("Received invalid message from server: " + message);
-        }
+    public void registerMessageHandlers(Client client) {
+        client.setMessageHandler(TcpCodec.OP_IDLE_CLIENTS, body -> {
+            Map<Integer, String> clients = new HashMap<>();
+            int count = body.getInt();
+            for (int i = 0; i < count; i++) {
+                int id = body.getInt();
+                clients.put(id, TcpCodec.getString(body));
+            }
+            updateLobbyList(clients);
+        });
+        client.setMessageHandler(TcpCodec.OP_PLAYER_DIED, body -> {
+            int x = body.getInt();
+            die(new int[] { x, body.getInt() });
+        });
+        client.setMessageHandler(TcpCodec.OP_PLAYER_INFO, body -> {
+            int id = body.getInt();
+            this.playerSkins.put(id, TcpCodec.getString(body));
+            this.playerNames.put(id, TcpCodec.getString(body));
+        });
+        client.setMessageHandler(TcpCodec.OP_ENTER_GAME, body -> {
+            boolean first = TcpCodec.getBoolean(body);
+            handleEnterGame(TcpCodec.getString(body), first);
+        });
+        client.setMessageHandler(TcpCodec.OP_MAP_DATA, body -> {
+            String mapHash = TcpCodec.getString(body);
+            handleMapData(mapHash, TcpCodec.getBytes(body));
+        });
+        client.setMessageHandler(TcpCodec.OP_WENT_IDLE, body -> goIdle());
+        client.setMessageHandler(TcpCodec.OP_FLAG_GRABBED, body -> localPlayer.hasFlag(true));
+        client.setMessageHandler(TcpCodec.OP_FLAG_DROPPED, body -> localPlayer.hasFlag(false));
+        client.setMessageHandler(TcpCodec.OP_FLAG_CAPTURED, body -> {
+            int capturerId = body.getInt();
+            int blueScore = body.getInt();
+            int redScore = body.getInt();
+            if (capturerId == this.clientID) {
+                localPlayer.hasFlag(false);
+            }
+            App.LOGGER.addLog("Flag captured by player " + capturerId + ". Score: " + blueScore + ":" + redScore);
+        });
     }
 
     @Override
     public void invitePlayer(String playerName, int playerID) {
-        this.localClient.sendTCPMessageToServer(ServerRequests.invitePlayer(playerID));
+        this.localClient.sendTCPMessageToServer(TcpCodec.encodeInvitePlayer(playerID));
     }
 
     /**
@@ -425,111 +519,62 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
      */
     public void handleInvite(String playerName, int playerID) {
         this.yesnoToasts.displayConfirmation("Accept invite from: " + playerName + "?", () -> {
-            this.localClient.sendTCPMessageToServer(ServerRequests.acceptInvite(playerID));
+            this.localClient.sendTCPMessageToServer(TcpCodec.encodeInviteAnswer(playerID, true));
         }, () -> {
-            this.localClient.sendTCPMessageToServer(ServerRequests.declineInvite(playerID));
+            this.localClient.sendTCPMessageToServer(TcpCodec.encodeInviteAnswer(playerID, false));
         });
     }
 
     /**
-     * Moves the player based on the given speed and input events.
+     * Moves the player based on the input events, predicting the movement the
+     * server does once it receives the held buttons, with the same rules.
      *
      * @param inputEvents - {@code List<KeyEvent>} of the pressed keys.
-     * @param speed       - The speed value (int) to scale movement.
      */
     public void move(List<KeyEvent> inputEvents) {
-        boolean moveUp = false, moveDown = false, moveLeft = false, moveRight = false;
+        int buttons = 0;
         List<KeyEvent> events = new ArrayList<>(inputEvents);
 
         for (KeyEvent e : events) {
             switch (e.getKeyCode()) {
             case KeyEvent.VK_UP:
             case KeyEvent.VK_W:
-                moveUp = true;
+                buttons |= PlayerMovement.BUTTON_UP;
                 break;
             case KeyEvent.VK_DOWN:
             case KeyEvent.VK_S:
-                moveDown = true;
+                buttons |= PlayerMovement.BUTTON_DOWN;
                 break;
             case KeyEvent.VK_LEFT:
             case KeyEvent.VK_A:
-                moveLeft = true;
+                buttons |= PlayerMovement.BUTTON_LEFT;
                 break;
             case KeyEvent.VK_RIGHT:
             case KeyEvent.VK_D:
-                moveRight = true;
+                buttons |= PlayerMovement.BUTTON_RIGHT;
                 break;
             default:
                 break;
             }
         }
+        this.inputButtons = buttons;
 
         // Decide on sprite direction
-        if (moveRight) {
+        if ((buttons & PlayerMovement.BUTTON_RIGHT) != 0) {
             this.localPlayer.setFacingRight(true);
-        } else if (moveLeft) {
+        } else if ((buttons & PlayerMovement.BUTTON_LEFT) != 0) {
             this.localPlayer.setFacingRight(false);
         }
 
         // Switch correct walking animations
-        if (moveUp && moveLeft) {
-            this.localPlayer.switchAnimation("walk_diagup");
-        } else if (moveUp && moveRight) {
-            this.localPlayer.switchAnimation("walk_diagup");
-        } else if (moveDown && moveLeft) {
-            this.localPlayer.switchAnimation("walk_side");
-        } else if (moveDown && moveRight) {
-            this.localPlayer.switchAnimation("walk_side");
-        } else if (moveUp) {
-            this.localPlayer.switchAnimation("walk_up");
-        } else if (moveDown) {
-            this.localPlayer.switchAnimation("walk_down");
-        } else if (moveLeft) {
-            this.localPlayer.switchAnimation("walk_side");
-        } else if (moveRight) {
-            this.localPlayer.switchAnimation("walk_side");
-        } else {
-            this.localPlayer.switchAnimation("idle");
-        }
-
-        // Calculate horizontal and vertical movement directions
-        double deltaX = 0;
-        double deltaY = 0;
-
-        if (moveUp)
-            deltaY -= 1;
-        if (moveDown)
-            deltaY += 1;
-        if (moveLeft)
-            deltaX -= 1;
-        if (moveRight)
-            deltaX += 1;
-
-        // Normalize the movement direction
-        double magnitude = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
-        if (magnitude > 0) {
-            deltaX = (deltaX / magnitude) * this.speed;
-            deltaY = (deltaY / magnitude) * this.speed;
-        }
-
-        double tempX = this.pos[0] + deltaX;
-        double tempY = this.pos[1] + deltaY;
+        this.localPlayer.switchAnimation(PlayerMovement.getAnimation(buttons));
 
         if (this.currentMap == null) {
             return;
         }
 
-        // Validate new pos
-        if (tempX < 0 || tempX > this.currentMap.getWidth() - Player.TEXTURE_WIDTH) {
-            deltaX = 0;
-        }
-        if (tempY < 0 || tempY > this.currentMap.getHeight() - Player.TEXTURE_HEIGHT) {
-            deltaY = 0;
-        }
-
         // Update the player's position
-        this.pos[0] += deltaX;
-        this.pos[1] += deltaY;
+        step(buttons);
 
         // Update the viewport
         updateCameraPosition();
@@ -552,18 +597,9 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
     /**
      * Updates the lobby list.
      *
-     * @param list - target list.
+     * @param clients - IDs and display names of the clients that can be invited.
      */
-    public void updateLobbyList(String list) {
-        Map<Integer, String> clients = new HashMap<>();
-
-        if (!list.equals("")) {
-            String[] displayNames = list.split(",");
-            for (String client : displayNames) {
-                clients.put(Integer.parseInt(client.substring(0, 1)), client.substring(1));
-            }
-        }
-
+    public void updateLobbyList(Map<Integer, String> clients) {
         for (LobbyInviteScreen l : this.gpanel.getWidgetsOfClass(LobbyInviteScreen.class)) {
             l.setClients(clients);
         }
@@ -576,47 +612,41 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
      *
      */
     public void updatePlayerData() {
-        String localAnimationFrame = null;
-        for (Player player : this.gpanel.getWidgetsOfClass(Player.class)) {
-            if (!player.isEnemy()) {
-                localAnimationFrame = player.getAnimationFrame();
-            }
-        }
+        this.localInput.playerId = this.clientID;
+        this.localInput.sequence = this.inputSequence++;
+        this.localInput.buttons = this.movementEnabled ? this.inputButtons : 0;
+        this.inputHistory[this.localInput.sequence & (INPUT_HISTORY_SIZE - 1)] = this.localInput.buttons;
+        this.localInput.eventAck = this.eventSequence;
+        writeQueuedPlayerObjects(this.localInput);
+        this.localClient.sendInput(this.localInput);
 
         // Get the current players from the panel and their positions from the
         // server
-        ArrayList<Player> players = this.gpanel.getWidgetsOfClass(Player.class);
-        GameDataStruct struct = localClient.updatePlayerPositions(new ClientStruct(pos[0], pos[1], this.clientID, this.health, this.username, localAnimationFrame, getPlayerObjectDataString(true)));
-        if (struct == null) {
+        Snapshot snapshot = localClient.receiveSnapshot();
+        if (snapshot == null) {
             return;
         }
-
-        List<ClientStruct> serverPositions = struct.connectedClientsList;
-        String playerObjectData = struct.playerObjectData;
-
-        // Get the local player, and remove it from the rendering list
-        ClientStruct localPlayerStruct = null;
-        for (ClientStruct cs : serverPositions) { // Find the local player
-            if (cs.getId() == this.clientID) {
-                localPlayerStruct = cs;
-                serverPositions.remove(localPlayerStruct); // Remove local player for rendering
-                break;
-            }
-        }
+        ArrayList<Player> players = this.gpanel.getWidgetsOfClass(Player.class);
 
         // ---- LOCAL PLAYER DATA SET
 
-        if (localPlayerStruct != null) {
-            // Health
-            this.health = localPlayerStruct.getHealth();
-            this.localPlayer.setHealth(this.health);
-            for (HUD hud : this.gpanel.getWidgetsOfClass(HUD.class)) {
-                hud.setHealth((int) health);
+        for (int i = 0; i < snapshot.getPlayerCount(); i++) {
+            PlayerState state = snapshot.getPlayer(i);
+            if (state.id == this.clientID) {
+                reconcile(state.x, state.y, snapshot.getInputAck());
+
+                // Health
+                this.health = state.health;
+                this.localPlayer.setHealth(this.health);
+                for (HUD hud : this.gpanel.getWidgetsOfClass(HUD.class)) {
+                    hud.setHealth(this.health);
+                }
+                break;
             }
         }
 
         // --- PLAYER OBJECT HANDELING
-        updatePlayerObjects(playerObjectData);
+        updatePlayerObjects(snapshot);
 
         // Track existing players by ID for quick lookup
         HashMap<Integer, Player> existingPlayers = new HashMap<>();
@@ -624,36 +654,26 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
             existingPlayers.put(player.getId(), player);
         }
 
-        // Culling distance calculation
-        int viewportWidth = windowSize[0] + 100; // Add 100 so the player wont dissapear at the edge of the screen
-        int viewportHeight = windowSize[1] + 100;
-        int cullDistanceX = viewportWidth / 2;
-        int cullDistanceY = viewportHeight / 2;
-
-        // Update or add players
-        for (ClientStruct clientStruct : serverPositions) {
-            int clientId = clientStruct.getId();
-            int[] clientPos = new int[] { clientStruct.getX(), clientStruct.getY() };
-            int health = clientStruct.getHealth();
-            String animationFrame = clientStruct.getAnimationFrame();
-
-            // Cull clients outside the viewport
-            int distanceX = Math.abs(clientPos[0] - pos[0]);
-            int distanceY = Math.abs(clientPos[1] - pos[1]);
-            if (distanceX > cullDistanceX || distanceY > cullDistanceY) {
-                continue;
+        // Update or add players, the server only sends the players in view
+        for (int i = 0; i < snapshot.getPlayerCount(); i++) {
+            PlayerState state = snapshot.getPlayer(i);
+            int clientId = state.id;
+            if (clientId == this.clientID) {
+                continue; // Local player isn't rendered from server data
             }
 
             if (existingPlayers.containsKey(clientId)) {
                 // Update the position of the existing player
                 Player player = existingPlayers.get(clientId);
-                player.setPosition(clientPos);
-                player.setHealth(health);
-                player.setAnimationFrameData(animationFrame);
+                player.addState(this.localClient.getTickTime(snapshot.getTick()), state.x, state.y);
+                player.setHealth(state.health);
+                player.setAnimationState(state);
                 existingPlayers.remove(clientId); // Mark as processed
-            } else {
-                // Add new player to the panel
-                Player newPlayer = new Player(clientPos, clientStruct.getName(), clientId, animationFrame);
+            } else if (this.playerNames.containsKey(clientId)) {
+                // Add new player to the panel, once its display data arrived
+                Player newPlayer = new Player(new int[] { state.x, state.y }, this.playerNames.get(clientId), this.playerSkins.get(clientId), clientId, state);
+                newPlayer.addState(this.localClient.getTickTime(snapshot.getTick()), state.x, state.y);
+                newPlayer.setHealth(state.health);
                 this.gpanel.add(newPlayer);
             }
         }
@@ -668,6 +688,54 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
         }
     }
 
+    /**
+     * Moves the remote players to their buffered positions at the interpolation
+     * delay behind the estimated server time, so they move smoothly between
+     * snapshots. Runs every frame, not only when a snapshot arrived.
+     *
+     */
+    private void interpolateRemotePlayers() {
+        long renderTime = this.localClient.getServerTime() - this.interpolationDelay;
+        for (Player player : this.gpanel.getWidgetsOfClass(Player.class)) {
+            if (player.getId() != this.clientID) {
+                player.interpolate(renderTime, MAX_EXTRAPOLATION_MS);
+            }
+        }
+    }
+
+    /**
+     * Corrects the predicted position of the local player by the authoritative
+     * state from the server. The player is put at the server position, and the
+     * inputs the server didn't apply yet are replayed on top of it, so the player
+     * stays where it was predicted unless the server disagrees.
+     *
+     * @param x        - X position of the player on the server.
+     * @param y        - Y position of the player on the server.
+     * @param inputAck - sequence number of the last input the server applied.
+     */
+    private void reconcile(int x, int y, int inputAck) {
+        int pending = this.inputSequence - 1 - inputAck;
+        if (this.currentMap == null || pending < 0 || pending >= INPUT_HISTORY_SIZE) {
+            return; // Inputs to replay are gone, keep predicting until the server catches up
+        }
+        this.pos[0] = x;
+        this.pos[1] = y;
+        for (int sequence = inputAck + 1; sequence < this.inputSequence; sequence++) {
+            step(this.inputHistory[sequence & (INPUT_HISTORY_SIZE - 1)]);
+        }
+        updateCameraPosition();
+    }
+
+    /**
+     * Moves the local player by a single input step, the same way the server
+     * does.
+     *
+     * @param buttons - held buttons.
+     */
+    private void step(int buttons) {
+        PlayerMovement.move(this.pos, buttons, this.currentMap.getWidth() - Player.TEXTURE_WIDTH, this.currentMap.getHeight() - Player.TEXTURE_HEIGHT, this.obstacles);
+    }
+
     /**
      * Method executed when player dies.
      *
@@ -696,73 +764,53 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
     }
 
     /**
-     * Updates the positions of the player objects.
+     * Updates the player objects by applying the bullet spawn and despawn events
+     * of a snapshot. Events are resent until acknowledged, so the ones applied
+     * already are skipped. The next input acknowledges the applied events. If the
+     * server resynced the events, all bullets are dropped first, the live ones
+     * are respawned by the events.
      *
-     * @param playerObjectData - enemy created object data.
+     * @param snapshot - game state received from the server.
      */
-    public void updatePlayerObjects(String playerObjectData) {
-
-        String newObjectData;
-        String oldObjectData;
-
-        if (playerObjectData.startsWith("/") && playerObjectData.length() > 1) {
-            newObjectData = null;
-            oldObjectData = playerObjectData.substring(1);
-        } else if (playerObjectData.length() <= 1) {
-            newObjectData = null;
-            oldObjectData = null;
-        } else if (playerObjectData.endsWith("/")) {
-            String[] splitData = playerObjectData.split("/");
-            newObjectData = splitData.length > 0 ? splitData[0] : null;
-            oldObjectData = null;
-        } else {
-            String[] splitData = playerObjectData.split("/");
-            newObjectData = splitData.length > 0 ? splitData[0] : null;
-            oldObjectData = splitData.length > 1 ? splitData[1] : null;
+    public void updatePlayerObjects(Snapshot snapshot) {
+        if (snapshot.getResyncSequence() - this.resyncSequence > 0) {
+            this.resyncSequence = snapshot.getResyncSequence();
+            removeAllBullets();
         }
-
-        // ---- Add new objects
-        if (newObjectData != null) { // If empty just dont do anything
-            String[] newObjects = newObjectData.split(",");
-            for (String object : newObjects) {
-                String[] objectData = object.split(":");
-                if (objectData.length != 6) {
-                    continue;
+        int sequence = snapshot.getFirstEventSequence();
+        for (int i = 0; i < snapshot.getEventCount(); i++, sequence++) {
+            if (sequence - this.eventSequence < 0) {
+                continue; // Applied already
+            }
+            BulletSpawn event = snapshot.getEvent(i);
+            Long key = Snapshot.toBulletKey(event.ownerId, event.bulletNum);
+            if (snapshot.isDespawnEvent(i)) {
+                Bullet b = this.bullets.remove(key);
+                if (b != null) {
+                    b.stop();
+                    this.gpanel.remove(b);
                 }
-
-                String bulletId = objectData[1];
-                int[] initPos = Arrays.stream(objectData[2].split("&")).mapToInt(Integer::parseInt).toArray();
-                int[] targetPos = Arrays.stream(objectData[3].split("&")).mapToInt(Integer::parseInt).toArray();
-                int decayTime = Integer.parseInt(objectData[4]);
-                int initVelocity = Integer.parseInt(objectData[5]);
-
-                Bullet b = new Bullet(initPos, targetPos, initVelocity, decayTime, bulletId);
+            } else if (!this.bullets.containsKey(key)) {
+                Bullet b = new Bullet(event);
+                this.bullets.put(key, b);
                 this.gpanel.add(b);
             }
         }
-
-        List<Bullet> bullets = this.gpanel.getWidgetsOfClass(Bullet.class);
-
-        if (oldObjectData != null) { // If empty remove all
-            String[] oldObjects = oldObjectData.split(",");
-            for (String object : oldObjects) {
-                synchronized (bullets) {
-                    List<Bullet> bulletsToRemove = new ArrayList<>();
-                    for (Bullet b : bullets) {
-                        if (object.equals(b.getObjectId())) {
-                            bulletsToRemove.add(b); // Collect bullets to remove
-                        }
-                    }
-                    for (Bullet b : bulletsToRemove) {
-                        bullets.remove(b); // Remove them after iteration
-                    }
-                }
-            }
+        if (sequence - this.eventSequence > 0) {
+            this.eventSequence = sequence;
         }
+    }
 
-        for (Bullet b : bullets) {
+    /**
+     * Removes all bullets from the panel.
+     *
+     */
+    private void removeAllBullets() {
+        for (Bullet b : this.bullets.values()) {
+            b.stop();
             this.gpanel.remove(b);
         }
+        this.bullets.clear();
     }
 
     /////////////////
@@ -941,42 +989,19 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
     }
 
     /**
-     * Converts all player created objects into a {@code String} that can be send
-     * over the server.
+     * Moves all qued player created objects into the client input, so they can be
+     * send to the server. The qued list is cleared.
      *
-     * @param markDataAsSend - if {@code true}, data from the qued list will be
-     *                       cleared.
-     * @return - {@code String} data.
+     * @param input - target client input.
      */
-    private String getPlayerObjectDataString(boolean markDataAsSend) {
-        ArrayList<Bullet> bullets;
-
+    private void writeQueuedPlayerObjects(ClientInput input) {
+        input.clearBullets();
         synchronized (this.quedPlayerObjects) {
-            if (markDataAsSend) {
-                if (this.quedPlayerObjects instanceof ArrayList<?>) {
-                    bullets = new ArrayList<>((ArrayList<Bullet>) this.quedPlayerObjects);
-                    this.quedPlayerObjects.clear();
-                } else {
-                    LOGGER.addLog("Error while casting the qued bullet list. ");
-                    this.quedPlayerObjects.clear();
-                    bullets = new ArrayList<Bullet>();
-                }
-            } else {
-                bullets = this.quedPlayerObjects;
+            for (Bullet b : this.quedPlayerObjects) {
+                b.writeSpawnData(input.addBullet());
             }
+            this.quedPlayerObjects.clear();
         }
-
-        StringBuilder data = new StringBuilder();
-        for (Bullet b : bullets) {
-            data.append(b.toString()).append(",");
-        }
-
-        // Remove trailing comma
-        if (data.length() > 0) {
-            data.setLength(data.length() - 1);
-        }
-
-        return data.toString();
     }
 
     /**
@@ -1086,9 +1111,10 @@ public class App implements InteractableHandler, LobbyHandler, ServerMessageHand
                 move(pressedKeys);
             }
             if (pressedKeys.isEmpty()) {
-                localPlayer.switchAnimation("idle");
+                localPlayer.switchAnimation(Animation.IDLE);
             }
             updatePlayerData();
+            interpolateRemotePlayers();
             gpanel.add(new ConnectionWidget());
         }
 
@@ -32,12 +32,19 @@ package flaggiclient.common;
  */
 public class AppOptions {
 
+    /////////////////
+    // Constants
+    ////////////////
+
+    public static final int DEFAULT_INTERPOLATION_DELAY_MS = 100; // Two snapshots at 20 ticks per second
+
     /////////////////
     // Variables
     ////////////////
 
     public String name;
     public String ip;
+    public int interpolationDelay = DEFAULT_INTERPOLATION_DELAY_MS; // How far in the past remote players are shown, in ms
 
     /////////////////
     // Constructors
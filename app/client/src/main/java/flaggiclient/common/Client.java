@@ -26,21 +26,29 @@
 
 package flaggiclient.common;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
-import java.util.ArrayList;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 
 import flaggiclient.App;
-import flaggiclient.sctructs.ClientStruct;
-import flaggiclient.sctructs.GameDataStruct;
+import flaggishared.network.ClientInput;
+import flaggishared.network.FragmentAssembler;
+import flaggishared.network.Snapshot;
+import flaggishared.network.SnapshotHistory;
+import flaggishared.network.TcpCodec;
+import flaggishared.network.UdpCodec;
 
 public class Client {
 
@@ -50,6 +58,12 @@ public class Client {
 
     public static final int TCP_PORT = 54321;
     private static final int SERVER_TIMEOUT_SECONDS = 3;
+    private static final int SNAPSHOT_HISTORY_SIZE = 32;
+    private static final int INPUT_QUEUE_SIZE = 32; // Must be a power of two
+    private static final long UDP_POLL_TIMEOUT_MS = 100;
+    private static final int CLOCK_RESYNC_MS = 1000; // Offset changes larger than this are taken at once
+    private static final double CLOCK_FALL_RATE = 1.0 / 4; // Less delayed snapshots are trusted quickly
+    private static final double CLOCK_RISE_RATE = 1.0 / 64; // More delayed ones are mostly jitter
 
     /////////////////
     // Variables
@@ -57,78 +71,29 @@ public class Client {
 
     private int udpPort;
     private int clientId;
+    private int tickRate;
     private InetAddress serverAddress;
     private Socket tcpSocket;
-    private DatagramSocket udpSocket;
-    private String clientName;
-    private ObjectOutputStream tcpIn;
-    private ObjectInputStream tcpOut;
-    private Thread tcpListenerThread;
+    private DatagramChannel udpChannel;
+    private InetSocketAddress serverUdpAddress;
+    private String clientName, skinName;
+    private DataOutputStream tcpIn;
+    private DataInputStream tcpOut;
+    private Thread tcpListenerThread, udpThread;
+    private Selector udpSelector;
+    private final MessageHandler[] messageHandlers = new MessageHandler[TcpCodec.OPCODE_COUNT];
     private ServerMessageHandeler handeler;
-
-    /////////////////
-    // Server requests
-    ////////////////
-
-    /**
-     * Contstants class with message options for the server.
-     *
-     */
-    public static class ServerRequests {
-
-        public static final String PING = "ping";
-        public static final String DISCONNECT = "disconnect";
-        public static final String GET_IDLE_CLIENTS = "get-idle-clients";
-        public static final String GO_IDLE = "go-idle";
-
-        public static String initialMessage(String clientName) {
-            return "new-client:" + clientName;
-        }
-
-        public static String invitePlayer(int clientId) {
-            return "invite-player:" + clientId;
-        }
-
-        public static String acceptInvite(int clientId) {
-            return "accept-invite:" + clientId;
-        }
-
-        public static String declineInvite(int clientId) {
-            return "decline-invite:" + clientId;
-        }
-
-    }
-
-    public static class ServerResponses {
-
-        public static final String GO_IDLE = "go-idle";
-        public static final String UDP_IDLE = "idle";
-        public static final String FLAG_GRAB = "flag-grabbed";
-
-        public static boolean isEnterGame(String message) {
-            return message.startsWith("enter-game");
-        }
-
-        public static boolean isPong(String message) {
-            return message.equals("flaggi-pong");
-        }
-
-        public static boolean isDied(String message) {
-            return message.startsWith("player-died:");
-        }
-
-        public static String isLobbyList(String message) {
-            String prefix = "idle-clients:";
-            if (message.startsWith(prefix)) {
-                if (message.length() == prefix.length()) {
-                    return "";
-                }
-                return message.substring(prefix.length());
-            }
-            return null;
-        }
-
-    }
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(UdpCodec.MAX_PACKET_SIZE);
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate(UdpCodec.MAX_PACKET_SIZE);
+    private final ClientInput[] inputQueue = new ClientInput[INPUT_QUEUE_SIZE];
+    private final Mailbox<Snapshot> snapshotMailbox = new Mailbox<Snapshot>(Snapshot::new);
+    private final SnapshotHistory snapshotHistory = new SnapshotHistory(SNAPSHOT_HISTORY_SIZE);
+    private final FragmentAssembler fragmentAssembler = new FragmentAssembler();
+    private int lastSnapshotTick = -1, ackTick = 0;
+    private double smoothedClockOffset = Double.NaN; // Only used by the network thread
+    private volatile int inputHead, inputTail;
+    private volatile boolean snapshotResetRequested, udpRunning, connected;
+    private volatile long lastReceivedTime, clockOffset;
 
     /////////////////
     // Constructor
@@ -138,22 +103,32 @@ public class Client {
      * Default constructor.
      *
      * @param clientName    - display name of the client.
+     * @param skinName      - skin of the client, shown to other players.
      * @param serverAddress - server address.
      */
-    public Client(String clientName, InetAddress serverAddress, ServerMessageHandeler handeler) {
+    public Client(String clientName, String skinName, InetAddress serverAddress, ServerMessageHandeler handeler) {
         this.clientName = clientName;
+        this.skinName = skinName;
         this.serverAddress = serverAddress;
         this.handeler = handeler;
 
         try {
             this.tcpSocket = new Socket(this.serverAddress, TCP_PORT);
-            this.tcpIn = new ObjectOutputStream(tcpSocket.getOutputStream());
-            this.tcpOut = new ObjectInputStream(tcpSocket.getInputStream());
-            this.udpSocket = new DatagramSocket();
-            this.udpSocket.setSoTimeout(SERVER_TIMEOUT_SECONDS * 1000);
+            this.tcpSocket.setTcpNoDelay(true);
+            this.tcpIn = new DataOutputStream(tcpSocket.getOutputStream());
+            this.tcpOut = new DataInputStream(tcpSocket.getInputStream());
+            this.udpChannel = DatagramChannel.open();
+            this.udpChannel.configureBlocking(false);
+            this.udpSelector = Selector.open();
+            this.udpChannel.register(this.udpSelector, SelectionKey.OP_READ);
 
             makeConnection();
+            this.serverUdpAddress = new InetSocketAddress(this.serverAddress, this.udpPort);
+            this.lastReceivedTime = System.currentTimeMillis();
+            this.connected = true;
+            this.handeler.registerMessageHandlers(this);
             startTCPListener();
+            startUDPThread();
 
         } catch (IOException e) {
             App.LOGGER.addLog("IO Exception occured while connecting to the server.", e);
@@ -178,13 +153,10 @@ public class Client {
             socket.connect(new InetSocketAddress(serverAddress, port), 2000);
             socket.setSoTimeout(5000); // 5 sec
 
-            try (ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream()); ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
-
-                out.writeUTF(ServerRequests.PING);
-                out.flush();
+            try (DataOutputStream out = new DataOutputStream(socket.getOutputStream()); DataInputStream in = new DataInputStream(socket.getInputStream())) {
 
-                String response = in.readUTF();
-                return ServerResponses.isPong(response);
+                writeFrame(out, TcpCodec.encode(TcpCodec.OP_PING));
+                return readFrame(in).get() == TcpCodec.OP_PONG;
             }
         } catch (SocketTimeoutException e) {
             App.LOGGER.addLog("Server check timed out.", e);
@@ -196,128 +168,380 @@ public class Client {
     }
 
     /**
-     * Starts a separate thread to listen for server-to-client messages.
+     * Registers the handler of a server message. Messages without a handler are
+     * logged and ignored.
+     *
+     * @param opcode  - message opcode, from {@code TcpCodec}.
+     * @param handler - message handler, called on the TCP listener thread.
+     */
+    public void setMessageHandler(byte opcode, MessageHandler handler) {
+        this.messageHandlers[opcode] = handler;
+    }
+
+    /**
+     * Starts a separate thread to listen for server-to-client messages. The thread
+     * blocks on reading the next frame, so messages are dispatched to their
+     * handlers as soon as they arrive. If the server closes the connection, all
+     * resources are released, and the time-out handler is called.
      *
      */
     private void startTCPListener() {
         tcpListenerThread = new Thread(() -> {
             try {
-
-                while (!Thread.currentThread().isInterrupted()) {
-                    try {
-                        if (tcpOut.available() > 0) {
-                            String serverMessage = tcpOut.readUTF();
-                            handeler.handleMessage(serverMessage);
-                        } else {
-                            Thread.sleep(50);
-                        }
-                    } catch (EOFException e) {
-                        System.err.println("Connection closed by server.");
-                    } catch (SocketTimeoutException e) {
-                        System.err.println("Socket read timed out. Retrying...");
-                    } catch (IOException e) {
-                        System.err.println("I/O error while reading from server: " + e.getMessage());
-                        e.printStackTrace();
-                        break;
-                    }
+                while (true) {
+                    dispatchMessage(readFrame(tcpOut));
+                }
+            } catch (EOFException e) {
+                if (connected) {
+                    App.LOGGER.addLog("Connection closed by the server.");
+                }
+            } catch (IOException e) {
+                if (connected) {
+                    App.LOGGER.addLog("I/O error while reading from the server.", e);
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
             } finally {
-                // TODO Clenup resources
+                if (closeConnection()) {
+                    handeler.timeout();
+                }
             }
-        });
+        }, "Client TCP listener");
 
         tcpListenerThread.setDaemon(true);
         tcpListenerThread.start();
     }
 
+    /**
+     * Calls the handler of a received message.
+     *
+     * @param frame - received frame, positioned at the opcode.
+     */
+    private void dispatchMessage(ByteBuffer frame) {
+        int opcode = frame.get();
+        MessageHandler handler = opcode >= 0 && opcode < messageHandlers.length ? messageHandlers[opcode] : null;
+        if (handler == null) {
+            App.LOGGER.addLog("Received invalid message from server with opcode " + opcode);
+            return;
+        }
+        try {
+            handler.handle(frame);
+        } catch (BufferUnderflowException e) {
+            App.LOGGER.addLog("Received malformed message from server with opcode " + opcode, e);
+        }
+    }
+
     /**
      * Makes initial connection with the server through TCP.
      *
      */
     private void makeConnection() throws IOException {
-        tcpIn.writeUTF(ServerRequests.initialMessage(clientName));
-        tcpIn.flush();
+        writeFrame(tcpIn, TcpCodec.encodeNewClient(skinName, clientName));
 
-        clientId = tcpOut.readInt();
-        udpPort = tcpOut.readInt();
+        ByteBuffer welcome = readFrame(tcpOut);
+        if (welcome.get() != TcpCodec.OP_WELCOME) {
+            throw new IOException("Server didn't respond with a welcome message.");
+        }
+        clientId = welcome.getInt();
+        udpPort = welcome.getInt();
+        tickRate = welcome.getInt();
+        if (tickRate <= 0) {
+            throw new IOException("Server sent an invalid tick rate: " + tickRate);
+        }
 
         App.LOGGER.addLog("Assigned Client ID: " + clientId);
         App.LOGGER.addLog("Received UDP Port: " + udpPort);
     }
 
     /**
-     * Sends a custom message to the server through TCP.
+     * Sends a message to the server through TCP. Safe to call from any thread.
      *
-     * @param message - The message to send.
+     * @param message - The frame to send, encoded by {@code TcpCodec}.
      */
-    public void sendTCPMessageToServer(String message) {
+    public synchronized void sendTCPMessageToServer(ByteBuffer message) {
         try {
-            tcpIn.writeUTF(message);
-            tcpIn.flush();
-            App.LOGGER.addLog("Sent message to server: " + message);
+            writeFrame(tcpIn, message);
+            App.LOGGER.addLog("Sent message to server with opcode " + message.get(message.position() + Integer.BYTES));
         } catch (IOException e) {
             App.LOGGER.addLog("Failed to send message to server.", e);
         }
     }
 
     /**
-     * Disconnects the client from the server.
+     * Disconnects the client from the server. Calling it more than once, or after
+     * the server closed the connection, has no effect.
+     *
      */
     public void disconnectFromServer() {
+        if (!connected) {
+            return;
+        }
+        sendTCPMessageToServer(TcpCodec.encode(TcpCodec.OP_DISCONNECT));
+        if (closeConnection()) {
+            App.LOGGER.addLog("Disconnected successfully from server.");
+        }
+    }
+
+    /**
+     * Stops the network thread and closes both channels. The TCP listener thread
+     * ends, as its blocking read fails.
+     *
+     * @return {@code true} if the connection was open before the call.
+     */
+    private synchronized boolean closeConnection() {
+        if (!connected) {
+            return false;
+        }
+        connected = false;
+        udpRunning = false;
+        udpSelector.wakeup();
+        try {
+            udpChannel.close();
+        } catch (IOException e) {
+            App.LOGGER.addLog("IOException while closing the UDP channel.", e);
+        }
         try {
-            sendTCPMessageToServer(ServerRequests.DISCONNECT);
-            udpSocket.close();
             tcpSocket.close();
-            tcpListenerThread.interrupt();
-            App.LOGGER.addLog("Disconnected successfully from server.");
         } catch (IOException e) {
-            App.LOGGER.addLog("IOException while disconnecting from server.", e);
+            App.LOGGER.addLog("IOException while closing the TCP socket.", e);
         }
+        return true;
     }
+
+    /**
+     * Writes a frame to a blocking stream.
+     *
+     * @param out   - target stream.
+     * @param frame - encoded frame. Its position is left unchanged.
+     * @throws IOException if the write fails.
+     */
+    private static void writeFrame(DataOutputStream out, ByteBuffer frame) throws IOException {
+        out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+        out.flush();
+    }
+
+    /**
+     * Reads a whole frame from a blocking stream.
+     *
+     * @param in - source stream.
+     * @return - frame positioned at the opcode.
+     * @throws IOException if the read fails, or the frame length is invalid.
+     */
+    private static ByteBuffer readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > TcpCodec.MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return ByteBuffer.wrap(frame);
+    }
+
     /////////////////
     // UDP
     ////////////////
 
     /**
-     * Updates the position of this player on the server and gets all the positions
-     * of other players from the server. This method is called every frame.
+     * Queues the input of the local player to be sent by the network thread. This
+     * method is called every frame, and never blocks. The input is copied, so it
+     * can be reused. If the queue is full, the input is dropped.
+     *
+     * @param input - local player input.
+     */
+    public void sendInput(ClientInput input) {
+        int tail = this.inputTail;
+        if (tail - this.inputHead == INPUT_QUEUE_SIZE) {
+            App.LOGGER.addLog("Input queue is full, dropping the player input.");
+            return;
+        }
+        this.inputQueue[tail & (INPUT_QUEUE_SIZE - 1)].copyFrom(input);
+        this.inputTail = tail + 1;
+        this.udpSelector.wakeup();
+    }
+
+    /**
+     * Gets the newest game state snapshot received by the network thread, without
+     * blocking. Snapshots that arrived since the last call, but aren't the newest,
+     * are skipped. If the server didn't send anything for too long, the time-out
+     * handler is called.
      *
-     * @param clientStruct - local player data.
-     * @return a data struct with other player data.
+     * @return a snapshot with the room data, owned by the caller until the next
+     *         call, or {@code null} if no new snapshot arrived.
      */
-    public GameDataStruct updatePlayerPositions(ClientStruct clientStruct) {
+    public Snapshot receiveSnapshot() {
+        Snapshot snapshot = this.snapshotMailbox.take();
+        if (snapshot == null && System.currentTimeMillis() - lastReceivedTime > SERVER_TIMEOUT_SECONDS * 1000) {
+            lastReceivedTime = System.currentTimeMillis();
+            this.handeler.timeout();
+        }
+        return snapshot;
+    }
 
-        ArrayList<ClientStruct> playerPositions = new ArrayList<>();
-        String objectData = "";
+    /**
+     * Forgets all received snapshots before the next one is received. Called when
+     * entering a new game, so snapshots of the previous room are never used as
+     * baselines.
+     *
+     */
+    public void resetSnapshots() {
+        snapshotResetRequested = true;
+    }
 
-        try {
-            String message = clientStruct.toString();
-            byte[] buffer = message.getBytes();
-            DatagramPacket packet = new DatagramPacket(buffer, buffer.length, serverAddress, udpPort);
-            udpSocket.send(packet);
-
-            byte[] receiveBuffer = new byte[1024];
-            DatagramPacket receivePacket = new DatagramPacket(receiveBuffer, receiveBuffer.length);
-            udpSocket.receive(receivePacket);
-            String data = new String(receivePacket.getData(), 0, receivePacket.getLength());
-            if (data.equals(ServerResponses.UDP_IDLE)) {
-                return null;
+    /**
+     * Gets the server time of a tick. Ticks are a fixed period apart, so the time
+     * of a snapshot doesn't depend on when it arrived.
+     *
+     * @param tick - server tick.
+     * @return - server time in ms.
+     */
+    public long getTickTime(int tick) {
+        return tick * 1000L / this.tickRate;
+    }
+
+    /**
+     * Gets the current server time, estimated on the local clock from the arrival
+     * times of the snapshots. Can be called from any thread.
+     *
+     * @return - server time in ms.
+     */
+    public long getServerTime() {
+        return System.currentTimeMillis() - this.clockOffset;
+    }
+
+    /**
+     * Updates the offset between the local clock and the server time by the
+     * arrival of a snapshot. A snapshot can arrive late, but never early, so the
+     * offset follows less delayed snapshots faster than more delayed ones. Large
+     * changes, like the first snapshot, are taken at once.
+     *
+     * @param tick        - tick of the snapshot.
+     * @param receiveTime - local time the snapshot arrived at in ms.
+     */
+    private void updateClock(int tick, long receiveTime) {
+        long offset = receiveTime - getTickTime(tick);
+        if (Double.isNaN(smoothedClockOffset) || Math.abs(offset - smoothedClockOffset) > CLOCK_RESYNC_MS) {
+            smoothedClockOffset = offset;
+        } else {
+            smoothedClockOffset += (offset - smoothedClockOffset) * (offset < smoothedClockOffset ? CLOCK_FALL_RATE : CLOCK_RISE_RATE);
+        }
+        clockOffset = Math.round(smoothedClockOffset);
+    }
+
+    /**
+     * Starts the network thread, which sends the queued inputs and receives the
+     * snapshots. It waits for datagrams on a selector, and gets woken up when an
+     * input is queued.
+     *
+     */
+    private void startUDPThread() {
+        for (int i = 0; i < INPUT_QUEUE_SIZE; i++) {
+            this.inputQueue[i] = new ClientInput();
+        }
+        this.udpRunning = true;
+        this.udpThread = new Thread(() -> {
+            try {
+                while (udpRunning) {
+                    if (snapshotResetRequested) {
+                        snapshotResetRequested = false;
+                        snapshotHistory.clear();
+                        fragmentAssembler.reset();
+                        lastSnapshotTick = -1;
+                        ackTick = 0;
+                    }
+                    sendQueuedInputs();
+                    receiveSnapshots();
+                    udpSelector.select(UDP_POLL_TIMEOUT_MS);
+                    udpSelector.selectedKeys().clear();
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (udpRunning) {
+                    App.LOGGER.addLog("IOException caught in the network thread.", e);
+                }
+            } finally {
+                try {
+                    udpSelector.close();
+                } catch (IOException e) {
+                    App.LOGGER.addLog("Failed to close the UDP selector.", e);
+                }
             }
+        }, "Client network thread");
 
-            String[] splitData = data.split("\\|");
-            playerPositions = parsePositions(splitData[0]);
-            objectData = splitData[1];
+        this.udpThread.setDaemon(true);
+        this.udpThread.start();
+    }
 
-        } catch (SocketTimeoutException e) {
-            this.handeler.timeout();
-        } catch (IOException e) {
-            App.LOGGER.addLog("IOException caught while sending/receiving position data.", e);
+    /**
+     * Sends all queued inputs, with the tick of the last received snapshot as the
+     * acknowledgement. Runs on the network thread.
+     *
+     */
+    private void sendQueuedInputs() {
+        int head = this.inputHead;
+        while (head != this.inputTail) {
+            ClientInput input = this.inputQueue[head & (INPUT_QUEUE_SIZE - 1)];
+            try {
+                input.ackTick = ackTick;
+                sendBuffer.clear();
+                UdpCodec.encodeClientInput(sendBuffer, input);
+                sendBuffer.flip();
+                udpChannel.send(sendBuffer, serverUdpAddress);
+            } catch (BufferOverflowException e) {
+                App.LOGGER.addLog("Local player input doesn't fit into a single packet.", e);
+            } catch (IOException e) {
+                App.LOGGER.addLog("IOException caught while sending the player input.", e);
+            }
+            this.inputHead = ++head;
         }
+    }
 
-        return new GameDataStruct(playerPositions, objectData);
+    /**
+     * Receives all pending datagrams. Snapshots older than the last one are
+     * skipped, fragmented snapshots are only used once all fragments arrived.
+     * Decoded snapshots are kept as baselines for the following delta compressed
+     * ones, acknowledged with the next input, and published to the game loop. If
+     * the baseline of a snapshot is missing, a full snapshot is requested. Runs on
+     * the network thread.
+     *
+     */
+    private void receiveSnapshots() {
+        try {
+            while (true) {
+                receiveBuffer.clear();
+                if (udpChannel.receive(receiveBuffer) == null) {
+                    break;
+                }
+                lastReceivedTime = System.currentTimeMillis();
+                receiveBuffer.flip();
+                ByteBuffer packet = receiveBuffer;
+                int type = UdpCodec.readHeader(packet);
+                if (type == UdpCodec.TYPE_FRAGMENT) {
+                    if (!fragmentAssembler.add(packet)) {
+                        continue; // Incomplete
+                    }
+                    packet = fragmentAssembler.getPacket();
+                    type = UdpCodec.readHeader(packet);
+                }
+                if (type != UdpCodec.TYPE_SNAPSHOT) {
+                    continue;
+                }
+                Snapshot snapshot = snapshotMailbox.getBack();
+                if (!UdpCodec.decodeSnapshot(packet, snapshot, snapshotHistory)) {
+                    ackTick = 0; // Baseline lost, request a full snapshot
+                    continue;
+                }
+                if (snapshot.getTick() > lastSnapshotTick) {
+                    snapshotHistory.add().copyFrom(snapshot);
+                    lastSnapshotTick = snapshot.getTick();
+                    ackTick = lastSnapshotTick;
+                    updateClock(lastSnapshotTick, lastReceivedTime);
+                    snapshotMailbox.publish();
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            App.LOGGER.addLog("Received malformed game state from the server.", e);
+        } catch (IOException e) {
+            App.LOGGER.addLog("IOException caught while receiving the game state.", e);
+        }
     }
+
     /////////////////
     // Accessors
     ////////////////
@@ -332,38 +556,23 @@ public class Client {
     }
 
     /////////////////
-    // Helpers
+    // Message handeler interface
     ////////////////
 
     /**
-     * Parses the string of player positions.
+     * Handler of a single server message opcode.
      *
      */
-    private static ArrayList<ClientStruct> parsePositions(String data) {
-        ArrayList<ClientStruct> positions = new ArrayList<>();
-        String[] playerData = data.split(";");
-
-        for (String entry : playerData) {
-            String[] parts = entry.split(",");
-            if (parts.length == 6) {
-
-                int clientID = Integer.parseInt(parts[0]);
-                int posX = Integer.parseInt(parts[1]);
-                int posY = Integer.parseInt(parts[2]);
-                int health = Integer.parseInt(parts[3]);
-                String displayName = parts[4];
-                String animationFrame = parts[5];
-
-                positions.add(new ClientStruct(posX, posY, clientID, health, displayName, animationFrame, ""));
-            }
-        }
+    public interface MessageHandler {
 
-        return positions;
-    }
+        /**
+         * Handles a message send by the server.
+         *
+         * @param body - message body.
+         */
+        public void handle(ByteBuffer body);
 
-    /////////////////
-    // Message handeler interface
-    ////////////////
+    }
 
     /**
      * The interface for handling server messages.
@@ -372,11 +581,12 @@ public class Client {
     public interface ServerMessageHandeler {
 
         /**
-         * Handeles messages send by the server.
+         * Registers the handlers of all server messages. Called once connected, before
+         * any message is received.
          *
-         * @param message - raw server message.
+         * @param client - client to register the handlers on.
          */
-        public void handleMessage(String message);
+        public void registerMessageHandlers(Client client);
 
         /**
          * Method ececuted on server time-out.
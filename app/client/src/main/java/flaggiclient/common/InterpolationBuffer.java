@@ -0,0 +1,174 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiclient.common;
+
+/**
+ * Fixed size ring buffer of the positions of a remote entity, timestamped by
+ * the server time of the snapshots they were sent in. The entity is rendered a
+ * little in the past, at a time between two received positions, so it moves
+ * smoothly however late the snapshots arrive. If no newer position arrived in
+ * time, the movement is extrapolated for a short while. Positions too far
+ * apart to be walked are treated as teleports, and never interpolated across.
+ * Nothing is allocated after construction.
+ *
+ */
+public class InterpolationBuffer {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    private static final int TELEPORT_DISTANCE = 500; // Farther than a player walks between two snapshots
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final long[] time;
+    private final int[] x, y;
+    private final int mask;
+    private int head, count; // Head is the index of the next position
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor.
+     *
+     * @param capacity - number of positions kept, must be a power of two.
+     */
+    public InterpolationBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.time = new long[capacity];
+        this.x = new int[capacity];
+        this.y = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Adds a received position, overwriting the oldest one when full. Positions
+     * not newer than the newest one are ignored.
+     *
+     * @param time - server time of the position in ms.
+     * @param x    - X position.
+     * @param y    - Y position.
+     */
+    public void add(long time, int x, int y) {
+        if (this.count > 0 && time <= this.time[index(0)]) {
+            return;
+        }
+        this.time[this.head] = time;
+        this.x[this.head] = x;
+        this.y[this.head] = y;
+        this.head = (this.head + 1) & this.mask;
+        this.count = Math.min(this.count + 1, this.mask + 1);
+    }
+
+    /**
+     * Gets the position at a given time. Between two positions it's linearly
+     * interpolated, after the newest one it's extrapolated from the last two, for
+     * at most the given time. Before the oldest position, the oldest one is used.
+     *
+     * @param time             - server time to render at in ms.
+     * @param maxExtrapolation - longest time in ms to extrapolate for.
+     * @param position         - target array, gets the [x, y] position.
+     * @return - false if no position was received, and the target is left
+     *         unchanged.
+     */
+    public boolean sample(long time, int maxExtrapolation, int[] position) {
+        if (this.count == 0) {
+            return false;
+        }
+        int newer = index(0);
+        if (time >= this.time[newer]) {
+            position[0] = this.x[newer];
+            position[1] = this.y[newer];
+            if (this.count > 1) {
+                int older = index(1);
+                long elapsed = Math.min(time - this.time[newer], maxExtrapolation);
+                interpolate(older, newer, (double) (this.time[newer] - this.time[older] + elapsed) / (this.time[newer] - this.time[older]), position);
+            }
+            return true;
+        }
+        for (int age = 1; age < this.count; age++) {
+            int older = index(age);
+            if (this.time[older] <= time) {
+                position[0] = this.x[older];
+                position[1] = this.y[older];
+                interpolate(older, newer, (double) (time - this.time[older]) / (this.time[newer] - this.time[older]), position);
+                return true;
+            }
+            newer = older;
+        }
+        position[0] = this.x[newer];
+        position[1] = this.y[newer];
+        return true;
+    }
+
+    /**
+     * Forgets all positions.
+     *
+     */
+    public void clear() {
+        this.count = 0;
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    /**
+     * Gets the array index of a position by its age, 0 being the newest.
+     *
+     */
+    private int index(int age) {
+        return (this.head - 1 - age) & this.mask;
+    }
+
+    /**
+     * Writes the position at a fraction of the way between two positions, unless
+     * they are a teleport apart, then the target is left unchanged.
+     *
+     */
+    private void interpolate(int from, int to, double fraction, int[] position) {
+        int deltaX = this.x[to] - this.x[from];
+        int deltaY = this.y[to] - this.y[from];
+        if (Math.abs(deltaX) + Math.abs(deltaY) > TELEPORT_DISTANCE) {
+            return;
+        }
+        position[0] = this.x[from] + (int) Math.round(deltaX * fraction);
+        position[1] = this.y[from] + (int) Math.round(deltaY * fraction);
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiclient.common;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free mailbox passing the newest value from one producer thread to one
+ * consumer thread, using triple buffering. The producer fills its back slot
+ * and publishes it, the consumer takes the newest published slot. Values that
+ * weren't taken before the next publish are skipped. Neither side ever waits,
+ * and nothing is allocated after construction.
+ *
+ * @param <T> - type of the reusable values.
+ */
+public class Mailbox<T> {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4; // Set while the middle slot holds an unread value
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final Object[] slots;
+    private final AtomicInteger middle;
+    private int back, front; // Owned by the producer and the consumer
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor.
+     *
+     * @param factory - creates the three reusable values.
+     */
+    public Mailbox(Supplier<T> factory) {
+        this.slots = new Object[] { factory.get(), factory.get(), factory.get() };
+        this.back = 0;
+        this.middle = new AtomicInteger(1);
+        this.front = 2;
+    }
+
+    /////////////////
+    // Producer
+    ////////////////
+
+    /**
+     * Returns the value the producer fills in. Only the producer thread may use
+     * it, until it is published.
+     *
+     * @return - back value.
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) this.slots[this.back];
+    }
+
+    /**
+     * Publishes the back value, replacing any value not taken yet.
+     *
+     */
+    public void publish() {
+        this.back = this.middle.getAndSet(this.back | FRESH) & INDEX_MASK;
+    }
+
+    /////////////////
+    // Consumer
+    ////////////////
+
+    /**
+     * Takes the newest published value. The value belongs to the consumer until
+     * the next call.
+     *
+     * @return - newest value, or {@code null} if nothing was published since the
+     *         last call.
+     */
+    @SuppressWarnings("unchecked")
+    public T take() {
+        if ((this.middle.get() & FRESH) == 0) {
+            return null;
+        }
+        this.front = this.middle.getAndSet(this.front) & INDEX_MASK;
+        return (T) this.slots[this.front];
+    }
+
+}
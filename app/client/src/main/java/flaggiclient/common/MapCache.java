@@ -0,0 +1,140 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package flaggiclient.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import flaggiclient.App;
+import flaggishared.common.MapPayload;
+
+/**
+ * On-disk cache of compressed map data received from servers, keyed by the map
+ * content hash. Entries are verified against their hash when loaded, so a
+ * corrupted file is treated as a miss.
+ *
+ */
+public class MapCache {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    private static final String FILE_EXTENSION = ".map";
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final File directory;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor. The directory is created once the first map is
+     * stored.
+     *
+     * @param directory - cache directory.
+     */
+    public MapCache(File directory) {
+        this.directory = directory;
+    }
+
+    /////////////////
+    // Cache
+    ////////////////
+
+    /**
+     * Loads the compressed data of a map.
+     *
+     * @param hash - content hash of the map.
+     * @return - compressed map data, or {@code null} if the map isn't cached.
+     */
+    public byte[] load(String hash) {
+        File file = getFile(hash);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        try {
+            byte[] data = Files.readAllBytes(file.toPath());
+            if (hash.equals(MapPayload.hash(data))) {
+                return data;
+            }
+            App.LOGGER.addLog("Cached map " + hash + " is corrupted. Deleting...");
+            file.delete();
+        } catch (IOException e) {
+            App.LOGGER.addLog("Failed to read cached map " + hash, e);
+        }
+        return null;
+    }
+
+    /**
+     * Stores the compressed data of a map. The file is written under a temporary
+     * name first, so an interrupted write never leaves a partial entry.
+     *
+     * @param hash - content hash of the map.
+     * @param data - compressed map data.
+     */
+    public void store(String hash, byte[] data) {
+        File file = getFile(hash);
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(this.directory.toPath());
+            File temp = new File(this.directory, hash + ".tmp");
+            Files.write(temp.toPath(), data);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            App.LOGGER.addLog("Failed to cache map " + hash, e);
+        }
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    /**
+     * Gets the file of a cache entry. The hash comes from the server, so anything
+     * but a hexadecimal string is rejected to keep it inside the cache directory.
+     *
+     * @param hash - content hash of the map.
+     * @return - cache file, or {@code null} if the hash is not valid.
+     */
+    private File getFile(String hash) {
+        if (hash.isEmpty() || !hash.matches("[0-9a-f]+")) {
+            return null;
+        }
+        return new File(this.directory, hash + FILE_EXTENSION);
+    }
+
+}
@@ -22,6 +22,7 @@ import flaggiclient.common.Sprite;
 import flaggiclient.constants.WidgetTags;
 import flaggiclient.constants.ZIndex;
 import flaggishared.common.GPanel.Renderable;
+import flaggishared.network.BulletSpawn;
 
 /**
  * Bullet projectile UI widget.
@@ -31,13 +32,13 @@ public class Bullet extends Renderable implements Runnable {
     private static final int TRAIL_LENGTH = 10;
     private static int BULLET_COUNT = 0; // Unique bullet ID
 
+    private final int[] initialPosition, targetPosition;
     private double[] direction, position;
-    private int velocity, decayTime;
+    private int velocity, decayTime, ownerId, bulletNum, age;
     private Sprite sprite;
     private boolean running;
     private Runnable afterDecay;
     private List<double[]> trail;
-    private String creationData, bulletId;
     private Thread decayUpdateThread;
 
     // Constructors -------------------------------------------------------------
@@ -49,32 +50,42 @@ public class Bullet extends Renderable implements Runnable {
      * @param targetPosition  - Target position the bullet heads to [x, y].
      * @param velocity        - Velocity in points per second.
      * @param decayTime       - Time (in ms) after which the bullet disappears.
+     * @param clientId        - ID of the local client.
      */
     public Bullet(int[] initialPosition, int[] targetPosition, int velocity, int decayTime, int clientId) {
+        this(initialPosition, targetPosition, velocity, decayTime, clientId, BULLET_COUNT, 0);
+        BULLET_COUNT++;
+    }
+
+    /**
+     * Bullet projectiles received from the server. Doesn't increase the bullet ID.
+     * Bullets that came into view mid-flight start at their current position.
+     *
+     * @param spawn - bullet creation data.
+     */
+    public Bullet(BulletSpawn spawn) {
+        this(new int[] { spawn.initialX, spawn.initialY }, new int[] { spawn.targetX, spawn.targetY }, spawn.velocity, spawn.decayTime, spawn.ownerId, spawn.bulletNum, spawn.age);
+        this.position[0] = spawn.getCurrentX();
+        this.position[1] = spawn.getCurrentY();
+    }
+
+    private Bullet(int[] initialPosition, int[] targetPosition, int velocity, int decayTime, int ownerId, int bulletNum, int age) {
         super(ZIndex.ENVIRONMENT_TOP, WidgetTags.GAME_ELEMENTS, WidgetTags.PROJECTILES);
 
+        this.initialPosition = new int[] { initialPosition[0], initialPosition[1] };
+        this.targetPosition = new int[] { targetPosition[0], targetPosition[1] };
         this.position = new double[] { initialPosition[0], initialPosition[1] };
         this.velocity = velocity;
         this.decayTime = decayTime;
-        this.bulletId = clientId + "-" + BULLET_COUNT;
+        this.ownerId = ownerId;
+        this.bulletNum = bulletNum;
+        this.age = age;
         this.trail = new LinkedList<>();
         this.sprite = createSprite();
         this.direction = calculateDirection(initialPosition, targetPosition);
-        this.creationData = generateCreationData(initialPosition, targetPosition, decayTime, velocity);
         this.running = true;
 
         startDecayThread();
-
-        BULLET_COUNT++;
-    }
-
-    /**
-     * Enemy bullet projectiles. Doesn't increase the bullet ID.
-     */
-    public Bullet(int[] initialPosition, int[] targetPosition, int velocity, int decayTime, String bulletId) {
-        this(initialPosition, targetPosition, velocity, decayTime, -1);
-        this.bulletId = bulletId;
-        BULLET_COUNT--;
     }
 
     // Rendering ----------------------------------------------------------------
@@ -112,18 +123,26 @@ public class Bullet extends Renderable implements Runnable {
 
     // Accesors -----------------------------------------------------------------
 
+    public int getOwnerId() {
+        return this.ownerId;
+    }
+
+    public int getBulletNum() {
+        return this.bulletNum;
+    }
+
     /**
-     * Returns the player object ID in list [bulletId, clientId].
+     * Writes the bullet creation data to be send to the server.
      *
-     * @return - player object ID.
+     * @param spawn - target spawn data.
      */
-    public String getObjectId() {
-        return this.bulletId;
+    public void writeSpawnData(BulletSpawn spawn) {
+        spawn.set(this.ownerId, this.bulletNum, this.initialPosition[0], this.initialPosition[1], this.targetPosition[0], this.targetPosition[1], this.decayTime, this.velocity, 0);
     }
 
     @Override
     public String toString() {
-        return this.creationData;
+        return "Bullet{" + this.ownerId + "-" + this.bulletNum + "}";
     }
 
     // Modifiers ----------------------------------------------------------------
@@ -154,12 +173,8 @@ public class Bullet extends Renderable implements Runnable {
         return new double[] { dx / magnitude, dy / magnitude };
     }
 
-    private static String generateCreationData(int[] initialPosition, int[] targetPosition, int decayTime, int velocity) {
-        return "bullet:" + BULLET_COUNT + ":" + initialPosition[0] + "&" + initialPosition[1] + ":" + targetPosition[0] + "&" + targetPosition[1] + ":" + decayTime + ":" + velocity;
-    }
-
     private void startDecayThread() {
-        this.decayUpdateThread = new Thread(this, "Bullet update thread for bullet: " + this.creationData.split(":")[1]);
+        this.decayUpdateThread = new Thread(this, "Bullet update thread for bullet: " + this.ownerId + "-" + this.bulletNum);
         this.decayUpdateThread.start();
     }
 
@@ -167,7 +182,7 @@ public class Bullet extends Renderable implements Runnable {
 
     @Override
     public void run() {
-        long startTime = System.currentTimeMillis();
+        long startTime = System.currentTimeMillis() - this.age;
         long lastUpdate = System.currentTimeMillis();
 
         while (running) {
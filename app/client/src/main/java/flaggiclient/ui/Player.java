@@ -20,10 +20,13 @@ import java.util.List;
 import java.util.Map;
 
 import flaggiclient.App;
+import flaggiclient.common.InterpolationBuffer;
 import flaggiclient.common.Sprite;
 import flaggiclient.constants.WidgetTags;
 import flaggiclient.constants.ZIndex;
 import flaggishared.common.GPanel.Renderable;
+import flaggishared.network.PlayerState;
+import flaggishared.network.PlayerState.Animation;
 import flaggishared.util.FileUtil;
 import flaggishared.util.FontUtil;
 
@@ -36,23 +39,22 @@ public class Player extends Renderable {
     public static final int TEXTURE_WIDTH = 13 * Sprite.SPRITE_SCALING;
     public static final String DEFAULT_ENEMY_SKIN = "default_red";
     public static final String DEFAULT_SKIN = "default_blue";
+    private static final int STATE_BUFFER_SIZE = 16; // Must be a power of two
     private static Map<String, List<Image>> playerAnimationsLibrary;
 
-    private String name, animationFrame, localPlayerSkinName;
-    private boolean inverted = false, hasFlag = false;
+    private String name;
+    private String[] animationNames;
+    private boolean inverted = false, hasFlag = false, enemy;
     private int[] position = new int[2];
     private Sprite avatar, flag;
+    private InterpolationBuffer states;
+    private Animation animation = Animation.IDLE;
     private int id, health;
 
     // Constructors -------------------------------------------------------------
 
     public Player(int[] position, String name, String skinName, int id) {
-        this(position, name, id, null);
-
-        this.localPlayerSkinName = skinName;
-        this.avatar.setAnimation(localPlayerSkinName + "_idle");
-        this.avatar.setFps(2);
-        this.avatar.play();
+        this(position, name, skinName, id, false);
 
         this.flag.setAnimation("flag_blue");
         this.flag.setFps(2);
@@ -60,11 +62,16 @@ public class Player extends Renderable {
     }
 
     /**
-     * Enemy players
+     * Enemy players. The default skin is replaced with the default enemy skin.
      */
-    public Player(int[] pos, String name, int id, String animationFrame) {
+    public Player(int[] pos, String name, String skinName, int id, PlayerState state) {
+        this(pos, name, skinName.equals(DEFAULT_SKIN) ? DEFAULT_ENEMY_SKIN : skinName, id, true);
+        setAnimationState(state);
+    }
+
+    private Player(int[] pos, String name, String skinName, int id, boolean enemy) {
         super(ZIndex.PLAYER, WidgetTags.GAME_ELEMENTS);
-        if (animationFrame == null) {
+        if (enemy) {
             this.setZIndex(ZIndex.OTHER_PLAYERS);
             this.addTag(WidgetTags.ENEMY_PLAYER);
         }
@@ -74,8 +81,9 @@ public class Player extends Renderable {
         this.flag.addAnimation(Arrays.asList("flag-blue"), "flag_blue");
         this.flag.addAnimation(Arrays.asList("flag-red"), "flag_red");
         this.flag.setAnimation("flag_red");
-        this.animationFrame = animationFrame;
+        this.enemy = enemy;
         this.position = pos;
+        this.states = new InterpolationBuffer(STATE_BUFFER_SIZE);
         this.name = name;
         this.id = id;
 
@@ -83,6 +91,14 @@ public class Player extends Renderable {
             addAllAvatarAnimations();
         }
         this.avatar.setAnimations(playerAnimationsLibrary);
+
+        this.animationNames = new String[Animation.values().length];
+        for (Animation a : Animation.values()) {
+            this.animationNames[a.ordinal()] = skinName + "_" + a.getName();
+        }
+        this.avatar.setAnimation(this.animationNames[Animation.IDLE.ordinal()]);
+        this.avatar.setFps(2);
+        this.avatar.play();
     }
 
     // Rendering ----------------------------------------------------------------
@@ -99,11 +115,7 @@ public class Player extends Renderable {
             offset = new int[] { 0, 0 };
 
         } else {
-            String[] parsedFrameData = parseAnimationFrame(this.animationFrame);
-            String animationName = parsedFrameData[0];
-            int animationFrame = Integer.parseInt(parsedFrameData[1]);
-            boolean inverted = Boolean.parseBoolean(parsedFrameData[2]);
-            this.avatar.render(g, this.position[0] + offset[0], this.position[1] + offset[1], focusCycleRootAncestor, animationName, animationFrame, inverted);
+            this.avatar.render(g, this.position[0] + offset[0], this.position[1] + offset[1], focusCycleRootAncestor, this.inverted);
         }
 
         // Render the nametag
@@ -156,20 +168,43 @@ public class Player extends Renderable {
     // Modifiers ----------------------------------------------------------------
 
     /**
-     * Sets the animation frame value. This is used to render an exact animation
-     * state of enemy players.
+     * Sets the animation state of enemy players. The animation frames are played
+     * locally.
      *
-     * @param animationFrame - {@code String} in the form of
-     *                       "current-animation-name:current-frame".
+     * @param state - player state received from the server.
      */
-    public void setAnimationFrameData(String animationFrame) {
-        this.animationFrame = animationFrame;
+    public void setAnimationState(PlayerState state) {
+        switchAnimation(state.animation);
+        this.inverted = state.inverted;
     }
 
     public void setPosition(int[] position) {
         this.position = position;
     }
 
+    /**
+     * Buffers a position of a remote player received from the server. The player
+     * is moved to it later by {@link #interpolate(long, int)}.
+     *
+     * @param time - server time of the snapshot the position was sent in, in ms.
+     * @param x    - X position.
+     * @param y    - Y position.
+     */
+    public void addState(long time, int x, int y) {
+        this.states.add(time, x, y);
+    }
+
+    /**
+     * Moves the player to its buffered position at a given time.
+     *
+     * @param renderTime       - server time to show the player at in ms.
+     * @param maxExtrapolation - longest time in ms to extrapolate the movement
+     *                         for, if no newer position was received.
+     */
+    public void interpolate(long renderTime, int maxExtrapolation) {
+        this.states.sample(renderTime, maxExtrapolation, this.position);
+    }
+
     public void setFacingRight(boolean invert) {
         this.inverted = invert;
     }
@@ -184,18 +219,8 @@ public class Player extends Renderable {
 
     // Accesors -----------------------------------------------------------------
 
-    /**
-     * Makes the current animation frame to send to the server.
-     *
-     * @return - {@code String} in the form of
-     *         "current-animation-name:current-frame".
-     */
-    public String getAnimationFrame() {
-        return this.avatar.getAnimationFrame() + ":" + this.inverted;
-    }
-
     public boolean isEnemy() {
-        return this.animationFrame != null;
+        return this.enemy;
     }
 
     public int getId() {
@@ -209,15 +234,15 @@ public class Player extends Renderable {
     /**
      * Switches the player animation.
      *
-     * @param name - name of the player animation. (skin name not needed)
+     * @param animation - the player animation. (skin is added automatically)
      */
-    public void switchAnimation(String name) {
-        String animationName = this.localPlayerSkinName + "_" + name;
-        if (this.avatar.getAnimationFrame().split(":")[0].equals(animationName)) {
+    public void switchAnimation(Animation animation) {
+        if (this.animation == animation) {
             return;
         }
-        this.avatar.setAnimation(animationName);
-        if (name.equals("idle")) {
+        this.animation = animation;
+        this.avatar.setAnimation(this.animationNames[animation.ordinal()]);
+        if (animation == Animation.IDLE) {
             this.avatar.setFps(2);
         } else {
             this.avatar.setFps(4);
@@ -258,26 +283,6 @@ public class Player extends Renderable {
         }
     }
 
-    /**
-     * Parses the animation frame format {@code String} into an animation name
-     * value, and frame value. If the skin data is the default skin, it will be
-     * changed to use the default enemy skin.
-     *
-     * @param animationFrame - target message.
-     * @return - {@code String} array, index 0 with animation name, index 1 with
-     *         animation frame.
-     */
-    private static String[] parseAnimationFrame(String animationFrame) {
-        String[] data = animationFrame.split(":");
-        if (data.length != 3) {
-            return new String[] { DEFAULT_ENEMY_SKIN + "_idle", "0", "false" };
-        }
-        if (data[0].startsWith(DEFAULT_SKIN)) {
-            data[0] = DEFAULT_ENEMY_SKIN + data[0].substring(DEFAULT_SKIN.length());
-        }
-        return data;
-    }
-
     /**
      * Formats a list of animation names to be player sprite animations.
      *
@@ -12,6 +12,7 @@ dependencies {
     // JUnit for testing
     testImplementation("org.junit.jupiter:junit-jupiter:5.9.3")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    testRuntimeOnly("org.junit.platform:junit-platform-reporting") // Report entries of the benchmarks
 
     // JSON dependencies
     implementation("com.fasterxml.jackson.core:jackson-databind:2.15.0")
@@ -46,3 +47,23 @@ tasks.named<JavaExec>("run") {
 tasks.build {
     dependsOn(tasks.shadowJar)
 }
+
+tasks.named<Test>("test") {
+    useJUnitPlatform {
+        excludeTags("benchmark")
+    }
+}
+
+// Benchmarks are timed, so they only run on demand, reporting into build/benchmark
+tasks.register<Test>("benchmark") {
+    description = "Runs the benchmarks skipped by the test task."
+    group = "verification"
+    testClassesDirs = sourceSets["test"].output.classesDirs
+    classpath = sourceSets["test"].runtimeClasspath
+    useJUnitPlatform {
+        includeTags("benchmark")
+    }
+    systemProperty("junit.platform.reporting.open.xml.enabled", "true")
+    systemProperty("junit.platform.reporting.output.dir", layout.buildDirectory.dir("benchmark").get().asFile.absolutePath)
+    outputs.upToDateWhen { false }
+}
@@ -30,44 +30,55 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.JarURLConnection;
 import java.net.NetworkInterface;
-import java.net.ServerSocket;
-import java.net.Socket;
 import java.net.SocketException;
-import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.LockSupport;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-
-import flaggiserver.common.Bullet;
+import flaggiserver.common.ClientRegistry;
 import flaggiserver.common.ClientStruct;
 import flaggiserver.common.Logger;
+import flaggiserver.common.HitDetector;
 import flaggiserver.common.Logger.LogLevel;
+import flaggiserver.common.ProjectileEventQueue;
+import flaggiserver.common.ProjectileStore;
+import flaggiserver.common.Room;
+import flaggiserver.common.TriggerZones;
+import flaggiserver.common.SpatialGrid;
+import flaggiserver.network.BufferPool;
+import flaggiserver.network.Connection;
+import flaggiserver.network.NetworkReactor;
+import flaggishared.common.ColliderIndex;
 import flaggishared.common.GPanel;
 import flaggishared.common.MapData;
+import flaggishared.common.MapPayload;
 import flaggishared.common.PersistentValue;
 import flaggishared.common.MapData.ObjectData;
 import flaggishared.common.MapData.ObjectType;
 import flaggishared.common.MapData.Spawnpoint;
-import flaggiserver.common.Rectangle;
+import flaggishared.network.BulletSpawn;
+import flaggishared.network.ClientInput;
+import flaggishared.network.PlayerState;
+import flaggishared.network.Snapshot;
+import flaggishared.network.SnapshotHistory;
+import flaggishared.network.TcpCodec;
+import flaggishared.network.UdpCodec;
 
 /**
  * Server class for the LAN Game application.
@@ -82,21 +93,44 @@ public class Server {
     private static final int TCP_PORT = 54321;
     private static final int UDP_PORT = 54322;
     private static final int CLIENT_TIMEOUT_SECONDS = 10;
+    private static final long CLIENT_ID_REUSE_DELAY_MS = 3 * CLIENT_TIMEOUT_SECONDS * 1000L; // Outlives packets of a removed client
+    private static final int HANDSHAKE_TIMEOUT_MS = 500;
+    private static final int HOUSEKEEPING_INTERVAL_MS = 250;
+    private static final int DEFAULT_TICK_RATE = 20; // Projectiles are swept, so a low rate doesn't miss hits
+    private static final int MIN_TICK_RATE = 10; // Input queues must hold the inputs of a whole tick
+    private static final int MAX_TICK_RATE = 30; // Position histories must cover the rewind limit
+    private static final int MAX_CATCH_UP_TICKS = 3; // Older missed ticks are skipped, not simulated
+    private static final int CLIENT_INPUT_RATE = 60;
+    private static final int DEFAULT_SNAPSHOT_RATE = 20;
+    private static final int DEFAULT_UDP_WORKERS = 1;
+    private static final int DEFAULT_MAX_REWIND_MS = 200;
+    private static final int MAX_REWIND_LIMIT_MS = 1000; // Within the position history of the players
+    private static final int ROOM_REPORT_INTERVAL_SECONDS = 10; // Overruns are reported in batches, not every tick
+    private static final int AOI_MARGIN = 200; // Keeps entities known a bit before they get into view
+    private static final int AOI_CELL_SIZE = 512;
+    private static final int MAP_SCALING = 5; // Clients render maps scaled by their sprite scaling
+    private static final int PLAYER_WIDTH = 13 * MAP_SCALING;
+    private static final int PLAYER_HEIGHT = 20 * MAP_SCALING;
+    private static final int FLAG_ZONE_WIDTH = 14 * MAP_SCALING; // Size of the flag sprite
+    private static final int FLAG_ZONE_HEIGHT = 16 * MAP_SCALING;
     private static final String DATA_DIRECTORY_NAME = "kireiiiiiiii.flaggi-server";
 
     /////////////////
     // Variables
     ////////////////
 
-    public static final List<ClientStruct> clients = new CopyOnWriteArrayList<ClientStruct>();
-    public static final List<Bullet> playerObjects = new CopyOnWriteArrayList<Bullet>();
-    private static final ExecutorService tcpListenerThreads = Executors.newCachedThreadPool();
+    public static final ClientRegistry clients = new ClientRegistry(CLIENT_ID_REUSE_DELAY_MS);
     private static final Map<Integer, ClientHandler> clientHandlers = new ConcurrentHashMap<>();
-    private static final ArrayList<MapData> maps = new ArrayList<MapData>();
-    private static final Map<Integer, MapData> activeMaps = new ConcurrentHashMap<>();
+    private static final ArrayList<MapPayload> maps = new ArrayList<MapPayload>();
+    private static final Map<String, MapPayload> mapsByHash = new HashMap<String, MapPayload>();
+    private static final Map<String, ColliderIndex> obstaclesByHash = new HashMap<String, ColliderIndex>();
+    private static final Map<Integer, Room> rooms = new ConcurrentHashMap<>();
+    private static final ThreadLocal<ClientInput> incomingInput = ThreadLocal.withInitial(ClientInput::new); // One per UDP worker
+    private static volatile Room[] activeRooms = new Room[0]; // Copy of the rooms, iterated by the game loop without allocating
 
-    private static int maxClientID = 0;
-    private static GameLoop gameLoop;
+    static GameLoop gameLoop; // Package-private ones are set up by the tests too
+    static int tickRate, maxInputsPerTick, maxRewindMillis;
+    static NetworkReactor reactor;
 
     /////////////////
     // Main
@@ -111,53 +145,49 @@ public class Server {
 
         // ---- Initialize & log
         logServerCreation();
-        gameLoop = new GameLoop(60);
-        gameLoop.start();
         initializeMaps();
+        tickRate = getTickRate();
+        maxInputsPerTick = 2 * CLIENT_INPUT_RATE / tickRate; // Twice the input rate, to catch up after jitter
+        maxRewindMillis = getMaxRewindMillis();
 
-        // ---- Start listener threads
-        new Thread(Server::startTCPListener, "TCP listener").start();
-        new Thread(Server::startUDPListener, "UDP listener").start();
+        // ---- Start the network event loop
+        startNetworkReactor();
+
+        // ---- Start the game loop, sending packets from pooled buffers
+        gameLoop = new GameLoop(tickRate, getSnapshotRate(), getSimulationThreadCount(), reactor.getBufferPool());
+        gameLoop.start();
 
     }
 
     /////////////////
-    // TCP Listener
+    // Network
     /////////////////
 
     /**
-     * Listenes for incoming TCP connections, and creates a new Client handeler
-     * running on a separate thread.
+     * Opens the TCP and UDP channels, and starts the network event loop serving
+     * both of them on a single thread.
      *
      */
-    private static void startTCPListener() {
-        Logger.log(LogLevel.INFO, "TCP listener started on port '" + TCP_PORT + "'. Waiting for clients...");
-
-        try (ServerSocket serverSocket = new ServerSocket(TCP_PORT)) {
-            while (true) {
-                try {
-
-                    Socket clientSocket = serverSocket.accept();
-                    Logger.log(LogLevel.DEBUG, "New client connection established.");
-                    ClientHandler clientHandler = new ClientHandler(clientSocket);
-                    tcpListenerThreads.submit(clientHandler);
-
-                } catch (IOException e) {
-                    Logger.log(LogLevel.ERROR, "IO exception occurred in TCP listener.", e);
-                }
-            }
+    private static void startNetworkReactor() {
+        try {
+            reactor = new NetworkReactor(TCP_PORT, UDP_PORT, HOUSEKEEPING_INTERVAL_MS, getUdpWorkerCount(), new NetworkEvents());
         } catch (IOException e) {
-            Logger.log(LogLevel.ERROR, "IO Exception while creating the TCP socket.", e);
+            Logger.log(LogLevel.ERROR, "IO Exception while opening the server channels.", e);
+            handleFatalError();
+            return;
         }
+        reactor.start("Network reactor");
+        Logger.log(LogLevel.INFO, "TCP listener started on port '" + TCP_PORT + "'. Waiting for clients...");
+        Logger.log(LogLevel.INFO, "UDP listener started on port '" + UDP_PORT + "' with " + getUdpWorkerCount() + " worker(s). Waiting for data...");
     }
 
     /**
      * Sends a message to a specific client by ID.
      *
      * @param clientId - The ID of the target client.
-     * @param message  - The message to send.
+     * @param message  - The encoded frame to send.
      */
-    public static void sendTCPMessageToClient(int clientId, String message) {
+    public static void sendTCPMessageToClient(int clientId, ByteBuffer message) {
         ClientHandler handler = clientHandlers.get(clientId);
         if (handler != null) {
             handler.sendMessage(message);
@@ -169,140 +199,82 @@ public class Server {
     /**
      * Broadcasts a message to all connected clients through TCP.
      *
-     * @param message - The message to broadcast.
+     * @param message - The encoded frame to broadcast.
      */
-    public static void tcpBroadcast(String message) {
+    public static void tcpBroadcast(ByteBuffer message) {
         for (ClientHandler handler : clientHandlers.values()) {
-            handler.sendMessage(message);
+            handler.sendMessage(message.duplicate());
         }
     }
 
     /////////////////
-    // UDP Listener
+    // UDP
     ////////////////
 
     /**
-     * Starts the UDP listener for receiving client position data and handling
-     * heartbeat messages. Usually meant to be run on a separate thread.
+     * Processes an incoming UDP packet. Clients only send their input, which is
+     * queued and applied by the game loop. Nothing is sent back, the game loop
+     * broadcasts the game state on its own. Runs on the network reactor thread or
+     * a UDP worker, packets of one client are never processed concurrently. Every
+     * thread reuses its own decoding structure for all packets.
      *
+     * @param data   - datagram content.
+     * @param sender - address the datagram came from.
      */
-    private static void startUDPListener() {
-        Logger.log(LogLevel.INFO, "UDP listener started on port '" + UDP_PORT + "'. Waiting for data...");
-
-        try (DatagramSocket udpSocket = new DatagramSocket(UDP_PORT)) {
-            udpSocket.setSoTimeout(CLIENT_TIMEOUT_SECONDS * 1000);
-
-            byte[] buffer = new byte[1024];
-
-            while (true) {
-
-                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                try {
-                    udpSocket.receive(packet);
-                    processIncomingPacket(udpSocket, packet);
-                } catch (SocketTimeoutException e) {
-                }
-
-                checkForDisconnectedClients();
-                refreshIDNumberIfNoUsers();
-
-                // Reset buffer for the next packet
-                buffer = new byte[1024];
-            }
-
-        } catch (IOException e) {
-            Logger.log(LogLevel.ERROR, "An IO Exception occurred in the UDP listener.", e);
-            handleFatalError();
-        }
-    }
-
-    /**
-     * Processes an incoming UDP packet and handles client messages.
-     *
-     */
-    private static void processIncomingPacket(DatagramSocket udpSocket, DatagramPacket packet) throws IOException {
-        String message = new String(packet.getData(), 0, packet.getLength());
-        String[] parts = message.split(",");
-
+    private static void processIncomingPacket(ByteBuffer data, InetSocketAddress sender) {
         // Validate packet structure
-        if (parts.length < 6) {
-            Logger.log(LogLevel.WARN, "Received malformed UDP message: " + Arrays.toString(parts));
+        if (UdpCodec.readHeader(data) != UdpCodec.TYPE_CLIENT_INPUT) {
+            Logger.log(LogLevel.WARN, "Received malformed UDP message from " + sender);
             return;
         }
-
-        // Parse client data
-        int clientId = Integer.parseInt(parts[0]);
-        int x = Integer.parseInt(parts[1]);
-        int y = Integer.parseInt(parts[2]);
-        int health = Integer.parseInt(parts[3]);
-        // Username is on parts[4]
-        String animationFrame = parts[5];
-        String playerObjectData = (parts.length < 7) ? null : parts[6];
-
-        ClientStruct client;
-        synchronized (clients) {
-            client = getClient(clientId);
+        ClientInput input = incomingInput.get();
+        try {
+            UdpCodec.decodeClientInput(data, input);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            Logger.log(LogLevel.WARN, "Received truncated UDP message from " + sender);
+            return;
         }
 
-        if (client != null) {
-            updateClientData(client, x, y, health, animationFrame, playerObjectData);
-
-            String responseMessage = getAllClientsData(clientId);
-            sendUDPMessage(udpSocket, packet.getPort(), client, responseMessage);
+        ClientStruct client = getClient(input.playerId);
+        if (client == null) {
+            return;
         }
-    }
 
-    /**
-     * Updates the data of a client.
-     *
-     * @param client           - target {@code Client} object.
-     * @param x                - X position.
-     * @param y                - Y position.
-     * @param health           - client health
-     * @param animationFrame   - animation daya.
-     * @param playerObjectData - player objects.
-     */
-    private static void updateClientData(ClientStruct client, int x, int y, int health, String animationFrame, String playerObjectData) {
-        client.setPosition(x, y);
-        client.setAnimationFrame(animationFrame);
+        client.setUdpAddress(sender);
         client.updateLastReceivedTime();
 
-        if (health == -1) {
-            client.setHealth(100); // Reset health if required
-        }
-
-        if (playerObjectData != null) {
-            handlePlayerObjectData(playerObjectData, client);
+        // Bullets and acknowledgements of duplicated or reordered packets were
+        // already handled
+        if (client.queueInput(input.sequence, input.buttons)) {
+            client.setAckedSnapshotTick(input.ackTick);
+            client.setAckedEventSequence(input.eventAck);
+            for (int i = 0; i < input.getBulletCount(); i++) {
+                handlePlayerObjectData(input.getBullet(i), client);
+            }
         }
     }
 
     /**
-     * Adds all new bullets reported by the client.
+     * Adds a new bullet reported by the client into the room of the client.
+     * Bullets of clients that aren't in a game are dropped. The bullet hits the
+     * other players where the client saw them when shooting: the age of the last
+     * snapshot it acknowledged, plus the delay it shows the other players with,
+     * up to the rewind limit.
      *
-     * @param dataString - recipe for the bullet.
-     * @param client     - owning client.
+     * @param spawn  - recipe for the bullet.
+     * @param client - owning client.
      */
-    private static void handlePlayerObjectData(String dataString, ClientStruct client) {
-        Bullet b = dataToBullet(dataString, client.getID());
-        synchronized (playerObjects) {
-            playerObjects.add(b);
+    private static void handlePlayerObjectData(BulletSpawn spawn, ClientStruct client) {
+        Room room = rooms.get(client.getRoomID());
+        if (room == null) {
+            return;
         }
-        client.addPlayerObject(b);
-    }
-
-    /**
-     * Sends an UDP message.
-     *
-     * @param udpSocket - target UDP socket.
-     * @param port      - port number.
-     * @param client    - target client.
-     * @param message   - response message.
-     * @throws IOException if an error occurs.
-     */
-    private static void sendUDPMessage(DatagramSocket udpSocket, int port, ClientStruct client, String message) throws IOException {
-        byte[] responseBuffer = message.getBytes();
-        DatagramPacket responsePacket = new DatagramPacket(responseBuffer, responseBuffer.length, client.getINET_ADRESS(), port);
-        udpSocket.send(responsePacket);
+        int rewindTime = 0;
+        if (client.getAckedSnapshotTick() != 0) {
+            int ticks = Math.max(0, gameLoop.getTick() - client.getAckedSnapshotTick());
+            rewindTime = Math.min(maxRewindMillis, ticks * 1000 / tickRate + client.getInterpolationDelay());
+        }
+        room.addProjectile(spawn, client.getID(), rewindTime);
     }
 
     /////////////////
@@ -318,20 +290,6 @@ public class Server {
         System.exit(1);
     }
 
-    /**
-     * Removes a client from the list of clients.
-     *
-     *
-     */
-    private static void removeClient(int clientId) {
-        for (ClientStruct c : clients) {
-            if (c.getID() == clientId) {
-                clients.remove(c);
-                return;
-            }
-        }
-    }
-
     /**
      * Logs the server creation message and the IP it was created on.
      *
@@ -426,7 +384,10 @@ public class Server {
     }
 
     /**
-     * Initializes the maps data from the maps directory.
+     * Initializes the maps data from the maps directory. Every map is serialized
+     * and compressed once, clients request the bytes by the map hash. The server
+     * then scales its copy of the map to the coordinates players move in, and
+     * indexes its obstacles.
      *
      */
     private static void initializeMaps() {
@@ -437,7 +398,17 @@ public class Server {
             String json;
             try {
                 json = PersistentValue.readResource(dir + "/" + mapFile);
-                maps.add(PersistentValue.fromJson(json, MapData.class));
+                MapData map = PersistentValue.fromJson(json, MapData.class);
+                if (map == null) {
+                    Logger.log(LogLevel.ERROR, "Failed to parse map file: " + mapFile);
+                    continue;
+                }
+                MapPayload payload = new MapPayload(map);
+                ColliderIndex obstacles = new ColliderIndex(map.scaleMap(MAP_SCALING), MAP_SCALING);
+                maps.add(payload);
+                mapsByHash.put(payload.getHash(), payload);
+                obstaclesByHash.put(payload.getHash(), obstacles);
+                Logger.log(LogLevel.INFO, "Loaded map '" + map.getName() + "', " + payload.getData().length + " bytes compressed, " + obstacles.size() + " obstacles, hash " + payload.getHash());
             } catch (IOException e) {
                 Logger.log(LogLevel.ERROR, "Failed to read map file: " + mapFile, e);
             }
@@ -449,114 +420,100 @@ public class Server {
     }
 
     /**
-     * Gets the {@code String} of player object data to send to server.
+     * Moves the projectile changes of a room since the last snapshot into the
+     * event queues of its members. Queues that need a resync, or all of them if
+     * the room lost changes, get the spawns of all live projectiles instead.
      *
-     * @return - data.
+     * @param room    - target room.
+     * @param members - members of the room.
+     * @param now     - current time in ms.
      */
-    private static String getAllPlayerObjectData(int id) {
-        StringBuilder data = new StringBuilder();
-        int roomID = getClient(id).getRoomID();
-
-        synchronized (playerObjects) {
-            for (Bullet bullet : new ArrayList<>(playerObjects)) {
-                if (!bullet.wasCreationDataSendToClient(id) && roomID == getClient(bullet.getOwningPlaterId()).getRoomID()) {
-                    data.append(bullet.toString()).append("+");
-                }
-                bullet.setWasSendToClient(id);
-            }
-
-            // Remove trailing "+" if present
-            if (data.length() > 0 && data.charAt(data.length() - 1) == '+') {
-                data.setLength(data.length() - 1);
-            }
-        }
-
-        data.append("/");
-
-        synchronized (clients) {
-            for (ClientStruct client : new ArrayList<>(clients)) {
-                List<Bullet> playerObjects = new ArrayList<>(client.getPlayerObjects());
-                if (roomID == client.getRoomID()) {
-                    for (Bullet object : playerObjects) {
-                        data.append(client.getID()).append("-").append(object.getBulletId()).append(",");
+    private static void queueProjectileEvents(Room room, ClientStruct[] members, long now) {
+        ProjectileStore projectiles = room.getProjectiles();
+        synchronized (projectiles) {
+            ProjectileEventQueue changes = projectiles.getChanges();
+            boolean changesLost = changes.takeResync();
+            for (ClientStruct member : members) {
+                ProjectileEventQueue events = member.getProjectileEvents();
+                events.acknowledge(member.getAckedEventSequence());
+                if (events.takeResync() || changesLost) {
+                    events.resync();
+                    for (int i = 0; i < projectiles.size(); i++) {
+                        projectiles.writeSpawnData(i, events.pushSpawn(now), now);
                     }
+                } else {
+                    events.append(changes);
                 }
             }
-
-            // Remove trailing "," if present
-            if (data.length() > 0 && data.charAt(data.length() - 1) == ',') {
-                data.setLength(data.length() - 1);
-            }
+            changes.clear();
         }
-
-        return data.toString();
     }
 
     /**
-     * Gets a data {@code String} of names of clients from input list, and separates
-     * them by a comma.
+     * Encodes the IDs and names of clients from input list into an idle clients
+     * message.
      *
-     * @param clients - target client list.
-     * @return client names separated by a comma.
+     * @param clients   - target clients.
+     * @param blacklist - ID of the client to leave out.
+     * @return encoded frame.
      */
-    private static String getPlayerNameData(List<ClientStruct> clients, int blacklist) {
-        List<ClientStruct> tempClients = new ArrayList<ClientStruct>(clients);
-        String clientNames = "";
-        for (ClientStruct client : tempClients) {
+    private static ByteBuffer encodePlayerNameData(ClientStruct[] clients, int blacklist) {
+        int[] ids = new int[clients.length];
+        String[] names = new String[clients.length];
+        int count = 0;
+        for (ClientStruct client : clients) {
             if (client.getID() != blacklist) {
-                clientNames += client.getID() + client.getDisplayName() + ",";
+                ids[count] = client.getID();
+                names[count++] = client.getDisplayName();
             }
         }
-        return clientNames;
+        return TcpCodec.encodeIdleClients(ids, names, count);
     }
 
     /**
-     * Idles all clients alone in a room.
+     * Removes a client from its room, making it idle. If the client leaves
+     * someone alone in the room, the room is closed and the last member is idled
+     * too.
      *
+     * @param client - leaving client.
      */
-    private static void checkForAloneInRoom(int roomID, int[] ignore) {
-
-        List<ClientStruct> clientsInRoom = new ArrayList<ClientStruct>();
-        for (ClientStruct client : clients) {
-            if (client.getRoomID() == roomID) {
-                for (int i : ignore) {
-                    if (client.getID() == i) {
-                        continue;
-                    }
-                }
-                clientsInRoom.add(client);
-            }
+    private static void leaveRoom(ClientStruct client) {
+        Room room = rooms.get(client.getRoomID());
+        client.setRoomID(-1);
+        if (room == null || room.removeMember(client) > 1) {
+            return;
         }
-        if (clientsInRoom.size() <= 1) {
-            for (ClientStruct c : clientsInRoom) {
-                c.setRoomID(-1);
-                sendTCPMessageToClient(c.getID(), "go-idle");
-            }
+        closeRoom(room.getID());
+        for (ClientStruct c : room.getMembers()) {
+            room.removeMember(c);
+            c.setRoomID(-1);
+            sendTCPMessageToClient(c.getID(), TcpCodec.encode(TcpCodec.OP_WENT_IDLE));
         }
+        Logger.log(LogLevel.INFO, "Room " + room.getID() + " closed after " + room.getTickCount() + " ticks, " + room.getOverrunCount() + " over budget, " + room.getLateTickCount() + " late.");
+    }
 
+    /**
+     * Opens a room, and publishes it to the game loop.
+     *
+     * @param room - new room, keyed by its ID.
+     */
+    static void openRoom(Room room) {
+        synchronized (rooms) {
+            rooms.put(room.getID(), room);
+            activeRooms = rooms.values().toArray(new Room[0]);
+        }
     }
 
     /**
-     * Coverts bullet creation data into a bullet object
+     * Closes a room, and removes it from the game loop.
      *
-     * @param data
-     * @return
+     * @param id - room ID.
      */
-    private static Bullet dataToBullet(String data, int clientId) {
-        String[] parsedData = data.split(":");
-        if (parsedData.length != 6) {
-            Logger.log(LogLevel.WARN, "Recieved invalid data format for creating a bullet object: " + Arrays.toString(parsedData));
-            return null;
-        }
-        int bulletNum = Integer.parseInt(parsedData[1]);
-        String[] initPosData = parsedData[2].split("&");
-        String[] targetPosData = parsedData[3].split("&");
-        int[] initPos = new int[] { Integer.parseInt(initPosData[0]), Integer.parseInt(initPosData[1]) };
-        int[] targetPos = new int[] { Integer.parseInt(targetPosData[0]), Integer.parseInt(targetPosData[1]) };
-        int decayTime = Integer.parseInt(parsedData[4]);
-        int initVelocity = Integer.parseInt(parsedData[5]);
-
-        return new Bullet(initPos, targetPos, initVelocity, decayTime, clientId, bulletNum);
+    static void closeRoom(int id) {
+        synchronized (rooms) {
+            rooms.remove(id);
+            activeRooms = rooms.values().toArray(new Room[0]);
+        }
     }
 
     /**
@@ -565,71 +522,86 @@ public class Server {
      *
      */
     private static void checkForDisconnectedClients() {
-        synchronized (clients) {
-            long currentTime = System.currentTimeMillis();
-            Iterator<ClientStruct> iterator = clients.iterator();
-
-            while (iterator.hasNext()) {
-                ClientStruct client = iterator.next();
-                long timeDifference = currentTime - client.getLastReceivedTime();
-
-                if (timeDifference > CLIENT_TIMEOUT_SECONDS * 1000) {
-                    Logger.log(LogLevel.WARN, "Client '" + client.getDisplayName() + "' disconnected (Timed out!).");
-                    clientHandlers.get(client.getID()).disconnectClient();
+        long currentTime = System.currentTimeMillis();
+        for (ClientStruct client : clients.getAll()) {
+            long timeDifference = currentTime - client.getLastReceivedTime();
+
+            if (timeDifference > CLIENT_TIMEOUT_SECONDS * 1000) {
+                Logger.log(LogLevel.WARN, "Client '" + client.getDisplayName() + "' disconnected (Timed out!).");
+                ClientHandler handler = clientHandlers.get(client.getID());
+                if (handler != null) {
+                    handler.disconnectClient();
+                } else {
+                    clients.remove(client.getID());
                 }
             }
         }
     }
 
     /**
-     * Checks if any users are connected, if not, resets the max client id back to 0
-     * to avoid huge id numbers.
+     * Accesor for the client using the client ID. Lock-free, and O(1).
+     *
+     * @param id - client ID
+     * @return a {@code Client} object reference. If not found, returns null.
+     */
+    private static ClientStruct getClient(int id) {
+        return clients.get(id);
+    }
+
+    /**
+     * Takes a snapshot of the game state of a room.
      *
+     * @param room     - target room.
+     * @param tick     - current game loop tick.
+     * @param snapshot - cleared snapshot structure to fill in.
      */
-    private static void refreshIDNumberIfNoUsers() {
-        if (clients.isEmpty() && maxClientID > 0) {
-            maxClientID = 0;
-            Logger.log(LogLevel.INFO, "No users connected, resetting ID number to 0.");
+    private static void writeRoomSnapshot(Room room, int tick, Snapshot snapshot) {
+        snapshot.setTick(tick);
+        for (ClientStruct client : room.getMembers()) {
+            client.writeState(snapshot.addPlayer());
         }
     }
 
     /**
-     * Accesor for the client using the client ID.
+     * Sends an encoded packet to a client, if its UDP address is known already.
+     * The buffer is rewound, so the same packet can be sent to multiple clients.
      *
-     * @param id - client ID
-     * @return a {@code Client} object reference. If not found, returns null.
+     * @param client - target client.
+     * @param packet - encoded packet.
      */
-    private static ClientStruct getClient(int id) {
-        synchronized (clients) {
-            for (ClientStruct c : clients) {
-                if (c.getID() == id) {
-                    return c;
-                }
-            }
+    private static void sendUDPMessage(ClientStruct client, ByteBuffer packet) {
+        InetSocketAddress address = client.getUdpAddress();
+        if (address != null) {
+            packet.position(0);
+            reactor.sendDatagram(packet, address);
         }
-        return null;
     }
 
     /**
-     * Gets all positions of all connected clients.
+     * Moves a client to its spawnpoint and restores its health.
      *
-     * @return - a {@code String} of all client positions.
+     * @param room   - room of the client.
+     * @param client - target client.
+     * @return - the spawnpoint position, in unscaled map coordinates, as the
+     *         clients expect it.
      */
-    private static String getAllClientsData(int id) {
-        if (getClient(id).getRoomID() == -1) {
-            return "idle";
-        }
-        int roomID = getClient(id).getRoomID();
-        StringBuilder positions = new StringBuilder();
-        synchronized (clients) {
-            for (ClientStruct client : clients) {
-                if (roomID == client.getRoomID()) {
-                    positions.append(client.getID()).append(",").append(client.getX()).append(",").append(client.getY()).append(",").append(client.getHealth()).append(",").append(client.getDisplayName()).append(",").append(client.getAnimationFrame()).append(";");
-                }
-            }
+    private static int[] respawnClient(Room room, ClientStruct client) {
+        Spawnpoint spawn = room.getMap().getSpawnpoint();
+        int[] spawnPos = new int[2];
+        if (client.getID() == client.getRoomID()) {
+            spawnPos[0] = spawn.twoX;
+            spawnPos[1] = spawn.twoY;
+        } else {
+            spawnPos[0] = spawn.oneX;
+            spawnPos[1] = spawn.oneY;
         }
-        positions.append("|").append(getAllPlayerObjectData(id));
-        return positions.toString();
+        client.clearInputs();
+        client.setPosition(spawnPos[0], spawnPos[1]);
+        client.getPositionHistory().clear(); // Not rewound into the place of death
+        spawnPos[0] /= MAP_SCALING;
+        spawnPos[1] /= MAP_SCALING;
+        client.setHealth(100);
+        return spawnPos;
     }
 
     /**
@@ -671,6 +643,105 @@ public class Server {
         return hostIP.length() > 0 ? hostIP : null;
     }
 
+    /**
+     * Gets the rate of the simulation ticks. Can be changed by the
+     * {@code TICK_RATE} environment variable, within the supported range.
+     *
+     * @return - ticks per second.
+     */
+    private static int getTickRate() {
+        String rate = System.getenv("TICK_RATE");
+        if (rate == null || rate.isEmpty()) {
+            return DEFAULT_TICK_RATE;
+        }
+        try {
+            return Math.max(MIN_TICK_RATE, Math.min(MAX_TICK_RATE, Integer.parseInt(rate)));
+        } catch (NumberFormatException e) {
+            Logger.log(LogLevel.WARN, "Invalid TICK_RATE value '" + rate + "', using the default.");
+            return DEFAULT_TICK_RATE;
+        }
+    }
+
+    /**
+     * Gets the rate of the game state broadcast. Can be changed by the
+     * {@code SNAPSHOT_RATE} environment variable, but can't exceed the tick rate.
+     *
+     * @return - snapshots per second.
+     */
+    private static int getSnapshotRate() {
+        String rate = System.getenv("SNAPSHOT_RATE");
+        if (rate == null || rate.isEmpty()) {
+            return DEFAULT_SNAPSHOT_RATE;
+        }
+        try {
+            return Math.max(1, Math.min(tickRate, Integer.parseInt(rate)));
+        } catch (NumberFormatException e) {
+            Logger.log(LogLevel.WARN, "Invalid SNAPSHOT_RATE value '" + rate + "', using the default.");
+            return DEFAULT_SNAPSHOT_RATE;
+        }
+    }
+
+    /**
+     * Gets the number of threads processing the UDP packets. Can be changed by the
+     * {@code UDP_WORKERS} environment variable, but can't exceed the number of
+     * available processors.
+     *
+     * @return - UDP worker count.
+     */
+    private static int getUdpWorkerCount() {
+        String workers = System.getenv("UDP_WORKERS");
+        if (workers == null || workers.isEmpty()) {
+            return DEFAULT_UDP_WORKERS;
+        }
+        try {
+            return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), Integer.parseInt(workers)));
+        } catch (NumberFormatException e) {
+            Logger.log(LogLevel.WARN, "Invalid UDP_WORKERS value '" + workers + "', using the default.");
+            return DEFAULT_UDP_WORKERS;
+        }
+    }
+
+    /**
+     * Gets the number of threads simulating the rooms. Can be changed by the
+     * {@code SIMULATION_THREADS} environment variable, but can't exceed the number
+     * of available processors, which is also the default.
+     *
+     * @return - simulation thread count.
+     */
+    private static int getSimulationThreadCount() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        String threads = System.getenv("SIMULATION_THREADS");
+        if (threads == null || threads.isEmpty()) {
+            return processors;
+        }
+        try {
+            return Math.max(1, Math.min(processors, Integer.parseInt(threads)));
+        } catch (NumberFormatException e) {
+            Logger.log(LogLevel.WARN, "Invalid SIMULATION_THREADS value '" + threads + "', using the default.");
+            return processors;
+        }
+    }
+
+    /**
+     * Gets the longest time the players are rewound by for lag compensation. Can
+     * be changed by the {@code MAX_REWIND_MS} environment variable, 0 turns lag
+     * compensation off.
+     *
+     * @return - rewind limit in ms.
+     */
+    private static int getMaxRewindMillis() {
+        String rewind = System.getenv("MAX_REWIND_MS");
+        if (rewind == null || rewind.isEmpty()) {
+            return DEFAULT_MAX_REWIND_MS;
+        }
+        try {
+            return Math.max(0, Math.min(MAX_REWIND_LIMIT_MS, Integer.parseInt(rewind)));
+        } catch (NumberFormatException e) {
+            Logger.log(LogLevel.WARN, "Invalid MAX_REWIND_MS value '" + rewind + "', using the default.");
+            return DEFAULT_MAX_REWIND_MS;
+        }
+    }
+
     /**
      * Checks if a program is running in a Docker container or not.
      *
@@ -694,101 +765,96 @@ public class Server {
         return false;
     }
 
-    /**
-     * Calculates and returns the hitbox for a given client.
-     *
-     * @param client - target client.
-     */
-    private static Rectangle getPlayerHitbox(ClientStruct client) {
-        final int OFFSET_X = 7;
-        final int OFFSET_Y = 7;
-        final int WIDTH = 53;
-        final int HEIGHT = 93;
-
-        return new Rectangle(client.getX() + OFFSET_X, client.getY() + OFFSET_Y, WIDTH, HEIGHT);
-    }
-
     /**
      * Handles the collision between a bullet and a player.
      *
      */
-    private static void handleBulletCollision(Bullet bullet, ClientStruct target, List<Bullet> bulletsToRemove) {
-        removeBulletFromOwner(bullet);
-        bulletsToRemove.add(bullet);
+    private static void handleBulletCollision(Room room, ClientStruct target) {
         int newHealth = Math.max(target.getHealth() - 10, 0);
         target.setHealth(newHealth);
 
         if (newHealth == 0) {
-            Spawnpoint spawn = activeMaps.get(target.getID()).getSpawnpoint();
-            int[] spawnPos = new int[2];
-            if (target.getID() == target.getRoomID()) {
-                spawnPos[0] = spawn.twoX;
-                spawnPos[1] = spawn.twoY;
-            } else {
-                spawnPos[0] = spawn.oneX;
-                spawnPos[1] = spawn.oneY;
+            int[] spawnPos = respawnClient(room, target);
+            sendTCPMessageToClient(target.getID(), TcpCodec.encodePlayerDied(spawnPos[0], spawnPos[1]));
+            if (room.dropFlag(target)) {
+                sendTCPMessageToClient(target.getID(), TcpCodec.encode(TcpCodec.OP_FLAG_DROPPED));
+                Logger.log(LogLevel.INFO, "Player '" + target.getDisplayName() + "' died and dropped the flag in room " + room.getID());
             }
-            clientHandlers.get(target.getID()).sendMessage("player-died:" + spawnPos[0] + "," + spawnPos[1]);
         }
 
         Logger.log(LogLevel.DEBUG, "Bullet hit player '" + target.getDisplayName() + "'. Health: " + newHealth);
     }
 
-    private static void handleFlagCollision(ObjectData flag, ClientStruct target) {
-        boolean isBlue = target.getRoomID() == target.getID();
-        if (flag.getObjectType() == ObjectType.BLUE_FLAG && !isBlue) {
-            sendTCPMessageToClient(target.getID(), "flag-grabbed");
-        } else if (flag.getObjectType() == ObjectType.RED_FLAG && isBlue) {
-            sendTCPMessageToClient(target.getID(), "flag-grabbed");
-        }
-    }
-
     /**
-     * Removes a bullet from its owner's list of player objects.
+     * Handles a player entering a flag area. Entering the enemy flag picks it up,
+     * if it's at its base. Entering the own flag with the enemy flag scores a
+     * capture, if the own flag is at its base too. Leaving an area does nothing.
      *
+     * @param room   - room of the player.
+     * @param client - the player.
+     * @param zone   - index of the flag zone.
      */
-    private static void removeBulletFromOwner(Bullet bullet) {
-        for (ClientStruct owner : new ArrayList<>(clients)) {
-            if (owner.getID() == bullet.getOwningPlaterId()) {
-                owner.removePlayerObject(bullet);
-                break;
+    private static void handleFlagZoneEntered(Room room, ClientStruct client, int zone) {
+        if (room.getFlagZoneTeam(zone) != room.getTeam(client)) {
+            if (room.pickUpFlag(room.getFlagZoneTeam(zone), client)) {
+                sendTCPMessageToClient(client.getID(), TcpCodec.encode(TcpCodec.OP_FLAG_GRABBED));
+                Logger.log(LogLevel.INFO, "Player '" + client.getDisplayName() + "' grabbed the flag in room " + room.getID());
+            }
+        } else if (room.captureFlag(client)) {
+            ByteBuffer message = TcpCodec.encodeFlagCaptured(client.getID(), room.getCaptures(Room.TEAM_BLUE), room.getCaptures(Room.TEAM_RED));
+            for (ClientStruct member : room.getMembers()) {
+                sendTCPMessageToClient(member.getID(), message.duplicate());
             }
+            Logger.log(LogLevel.INFO, "Player '" + client.getDisplayName() + "' captured the flag in room " + room.getID() + ". Score: " + room.getCaptures(Room.TEAM_BLUE) + ":" + room.getCaptures(Room.TEAM_RED));
         }
     }
 
-    /**
-     * Removes bullets that have collided with players.
-     *
-     */
-    private static void removeBullets(List<Bullet> bulletsToRemove) {
-        try {
-            playerObjects.removeAll(bulletsToRemove);
-        } catch (IndexOutOfBoundsException e) {
-            Logger.log(LogLevel.ERROR, "Failed to remove bullets during update.", e);
-        }
-    }
 
     /////////////////
     // Game loop class
     ////////////////
 
     /**
-     * Game loop for the application.
+     * Game loop for the application. Every tick the rooms are simulated
+     * independently on a work-stealing pool, each applying the queued inputs of
+     * its players and resolving its collisions. A room gets a share of the tick
+     * as its budget, and the ticks running over it are counted and reported
+     * periodically. At the snapshot rate a tick-numbered snapshot of every room is
+     * taken. Each client only gets the players around its view (area of
+     * interest), looked up through a spatial grid, delta compressed against the
+     * last snapshot it acknowledged, and the projectile events it didn't
+     * acknowledge yet.
      *
      */
     @SuppressWarnings("unused")
-    private static class GameLoop implements Runnable {
+    static class GameLoop implements Runnable {
 
+        private final ForkJoinPool simulationPool;
+        private final Snapshot roomSnapshot = new Snapshot();
+        private final SpatialGrid playerGrid = new SpatialGrid(AOI_CELL_SIZE);
+        private final ByteBuffer snapshotBuffer = ByteBuffer.allocateDirect(UdpCodec.MAX_SNAPSHOT_SIZE);
+        private final ByteBuffer packetBuffer, idleBuffer;
         private boolean running = false;
-        private int targetFPS;
+        private int targetFPS, ticksPerSnapshot, nextReportTick;
+        private long startNanos, startMillis, skippedTicks;
+        volatile int tick;
 
         /**
          * Gameloop constructor. WILL NOT START THE GAME LOOP AUTOMATICALLY!!
          *
-         * @param fps
+         * @param fps               - ticks per second.
+         * @param snapshotRate      - snapshots sent per second.
+         * @param simulationThreads - number of threads simulating the rooms.
+         * @param bufferPool        - pool of the packet buffers.
          */
-        public GameLoop(int fps) {
+        public GameLoop(int fps, int snapshotRate, int simulationThreads, BufferPool bufferPool) {
             setFps(fps);
+            this.simulationPool = new ForkJoinPool(simulationThreads);
+            this.packetBuffer = bufferPool.acquire();
+            this.idleBuffer = bufferPool.acquire();
+            this.ticksPerSnapshot = Math.max(1, fps / snapshotRate);
+            UdpCodec.putHeader(this.idleBuffer, UdpCodec.TYPE_IDLE);
+            this.idleBuffer.flip();
         }
 
         /**
@@ -796,7 +862,7 @@ public class Server {
          *
          */
         public void start() {
-            Logger.log(LogLevel.INFO, "Started game loop.");
+            Logger.log(LogLevel.INFO, "Started game loop at " + targetFPS + " ticks per second. Sending a snapshot every " + ticksPerSnapshot + " ticks, simulating rooms on " + simulationPool.getParallelism() + " threads.");
             running = true;
             new Thread(this, "Game loop Thread").start();
         }
@@ -807,29 +873,50 @@ public class Server {
          */
         public void stop() {
             running = false;
+            simulationPool.shutdown();
         }
 
+        /**
+         * Runs the ticks on a fixed schedule. Every tick has a deadline, a whole tick
+         * period after the previous one, and the loop parks until it. Ticks that
+         * start late keep their deadline, so the rate doesn't drift. When the loop
+         * falls behind, the missed ticks are run back to back, but at most
+         * {@code MAX_CATCH_UP_TICKS} of them, the older ones are skipped.
+         *
+         */
         @Override
         public void run() {
+            long period = 1_000_000_000L / this.targetFPS;
+            this.startMillis = System.currentTimeMillis();
+            this.startNanos = System.nanoTime();
+            long deadline = this.startNanos;
             while (running) {
-                long optimalTime = 1_000_000_000 / targetFPS;
-                long startTime = System.nanoTime();
-
-                update();
-
-                long elapsedTime = System.nanoTime() - startTime;
-                long sleepTime = optimalTime - elapsedTime;
-
-                if (sleepTime > 0) {
-                    try {
-                        Thread.sleep(sleepTime / 1_000_000, (int) (sleepTime % 1_000_000));
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
+                long now = System.nanoTime();
+                if (now < deadline) {
+                    LockSupport.parkNanos(deadline - now);
+                    continue; // Parking can return early
+                }
+                long due = (now - deadline) / period + 1;
+                if (due > MAX_CATCH_UP_TICKS) {
+                    long skipped = due - MAX_CATCH_UP_TICKS;
+                    this.skippedTicks += skipped;
+                    this.tick += (int) skipped; // Tick numbers stay tied to their deadlines
+                    deadline += skipped * period;
                 }
+                tick(deadline, period);
+                deadline += period;
             }
         }
 
+        /**
+         * Gets the number of the current tick. Can be read from any thread.
+         *
+         * @return - current tick.
+         */
+        public int getTick() {
+            return this.tick;
+        }
+
         /**
          * Set a new FPS value.
          *
@@ -840,53 +927,377 @@ public class Server {
         }
 
         /**
-         * Updates the game state by processing collisions between bullets and players,
-         * updating health, and marking dead clients.
+         * Runs a single tick of the game loop. The simulation runs at the scheduled
+         * time of the tick, not the time it actually started at.
          *
+         * @param deadline - scheduled start of the tick in {@link System#nanoTime()}.
+         * @param period   - tick period in ns.
          */
-        private void update() {
-            if (playerObjects == null || clients == null || playerObjects.isEmpty() || clients.isEmpty()) {
+        private void tick(long deadline, long period) {
+            this.tick++;
+            long tickTime = this.startMillis + (deadline - this.startNanos) / 1_000_000;
+            clearIdleInputs();
+            simulateRooms(deadline, tickTime, period);
+            if (this.tick % this.ticksPerSnapshot == 0) {
+                broadcastSnapshots();
+            }
+            if (this.tick >= this.nextReportTick) {
+                reportTickTimings();
+                this.nextReportTick = this.tick + this.targetFPS * ROOM_REPORT_INTERVAL_SECONDS;
+            }
+        }
+
+        /**
+         * Drops the inputs of clients that aren't in a game.
+         *
+         */
+        private void clearIdleInputs() {
+            for (ClientStruct client : clients.getAll()) {
+                if (client.getRoomID() == -1) {
+                    client.clearInputs();
+                }
+            }
+        }
+
+        /**
+         * Simulates all rooms in parallel, and waits for all of them to finish. Each
+         * room gets an equal share of the tick time of all simulation threads, but
+         * never more than the whole tick.
+         *
+         * @param deadline - scheduled start of the tick in {@link System#nanoTime()}.
+         * @param tickTime - scheduled time of the tick in ms, the simulation time.
+         * @param period   - tick period in ns.
+         */
+        private void simulateRooms(long deadline, long tickTime, long period) {
+            Room[] active = activeRooms;
+            if (active.length == 0) {
                 return;
             }
+            int parallelism = this.simulationPool.getParallelism();
+            long budgetNanos = period * parallelism / Math.max(parallelism, active.length);
+            this.simulationPool.invoke(new RoomTickTask(active, 0, active.length, new TickTiming(deadline, tickTime, budgetNanos, period / 2)));
+        }
 
-            List<Bullet> bulletsToRemove = new ArrayList<>();
+        /**
+         * Logs the ticks skipped by the game loop, and the tick timings of the rooms
+         * that ran over their tick budget or started ticks late since the last
+         * report.
+         *
+         */
+        private void reportTickTimings() {
+            if (this.skippedTicks > 0) {
+                Logger.log(LogLevel.WARN, "Game loop fell behind and skipped " + this.skippedTicks + " ticks in the last " + ROOM_REPORT_INTERVAL_SECONDS + " seconds.");
+                this.skippedTicks = 0;
+            }
+            for (Room room : activeRooms) {
+                long overruns = room.takeNewOverruns();
+                long lateTicks = room.takeNewLateTicks();
+                String report = room.takeTickReport();
+                if (overruns > 0 || lateTicks > 0) {
+                    Logger.log(LogLevel.WARN, "Room " + room.getID() + " ran over its tick budget " + overruns + " times and started " + lateTicks + " ticks late in the last " + ROOM_REPORT_INTERVAL_SECONDS + " seconds. " + report);
+                }
+            }
+        }
 
-            for (Bullet bullet : new ArrayList<>(playerObjects)) {
-                Rectangle bulletHitbox = bullet.getHitbox();
+        /**
+         * Takes the snapshot of every room once, and sends each of its members the
+         * part it can see, delta compressed against the snapshot it acknowledged,
+         * with its pending projectile events. Idle clients get an idle packet, so
+         * they can detect a server time-out.
+         *
+         */
+        void broadcastSnapshots() {
+            for (ClientStruct client : clients.getAll()) {
+                if (client.getRoomID() == -1) {
+                    sendUDPMessage(client, this.idleBuffer);
+                }
+            }
 
-                for (ClientStruct client : new ArrayList<>(clients)) {
-                    Rectangle playerHitbox = getPlayerHitbox(client);
+            long now = System.currentTimeMillis();
+            for (Room room : activeRooms) {
+                ClientStruct[] members = room.getMembers();
+                this.roomSnapshot.clear();
+                writeRoomSnapshot(room, this.tick, this.roomSnapshot);
+                indexRoomSnapshot(room.getMap());
+                queueProjectileEvents(room, members, now);
+
+                for (ClientStruct member : members) {
+                    SnapshotHistory history = member.getSnapshotHistory();
+                    Snapshot baseline = history.get(member.getAckedSnapshotTick());
+                    Snapshot view = history.add();
+                    if (view == baseline) {
+                        baseline = null; // Acknowledged snapshot is too old, and just got reused
+                    }
+                    writeVisibleState(member, view);
+                    member.getProjectileEvents().write(view, now);
 
-                    if (bulletHitbox.intersects(playerHitbox) && bullet.getOwningPlaterId() != client.getID() && client.getRoomID() == getClient(bullet.getOwningPlaterId()).getRoomID()) {
-                        handleBulletCollision(bullet, client, bulletsToRemove);
-                        break;
+                    this.snapshotBuffer.clear();
+                    try {
+                        UdpCodec.encodeSnapshot(this.snapshotBuffer, view, baseline);
+                    } catch (BufferOverflowException e) {
+                        Logger.log(LogLevel.WARN, "Game state visible to client " + member.getID() + " is too large to be sent.");
+                        continue;
                     }
+                    this.snapshotBuffer.flip();
+                    sendSnapshot(member, view.getTick());
                 }
             }
+        }
 
-            for (Map.Entry<Integer, MapData> entry : activeMaps.entrySet()) {
-                int mapId = entry.getKey();
-                MapData mapData = entry.getValue();
+        /**
+         * Sends the encoded snapshot to a client. Snapshots that don't fit into a
+         * single datagram are split into fragments.
+         *
+         * @param client - target client.
+         * @param tick   - snapshot tick, used as the fragment sequence number.
+         */
+        private void sendSnapshot(ClientStruct client, int tick) {
+            int count = UdpCodec.getFragmentCount(this.snapshotBuffer.remaining());
+            if (count == 1) {
+                sendUDPMessage(client, this.snapshotBuffer);
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                this.packetBuffer.clear();
+                UdpCodec.encodeFragment(this.packetBuffer, tick, i, count, this.snapshotBuffer);
+                this.packetBuffer.flip();
+                sendUDPMessage(client, this.packetBuffer);
+            }
+        }
 
-                for (ObjectData object : mapData.getGameObjects()) {
-                    if (object.getObjectType() == ObjectType.BLUE_FLAG || object.getObjectType() == ObjectType.RED_FLAG) {
-                        Rectangle flagHitbox = new Rectangle(object.getX(), object.getY(), 112, 128);
+        /**
+         * Inserts the players of the room snapshot into the spatial grid, by their
+         * index in the snapshot.
+         *
+         * @param map - map of the room, giving the grid size.
+         */
+        private void indexRoomSnapshot(MapData map) {
+            int width = map == null ? 0 : map.getWidth();
+            int height = map == null ? 0 : map.getHeight();
+            this.playerGrid.reset(width, height);
+            for (int i = 0; i < this.roomSnapshot.getPlayerCount(); i++) {
+                PlayerState player = this.roomSnapshot.getPlayer(i);
+                this.playerGrid.insert(i, player.x, player.y);
+            }
+        }
 
-                        for (ClientStruct client : new ArrayList<>(clients)) {
-                            if (client.getRoomID() == mapId) {
-                                Rectangle playerHitbox = getPlayerHitbox(client);
+        /**
+         * Copies the part of the room snapshot inside the view of a client, widened
+         * by a margin, into the snapshot sent to the client. The view is centered on
+         * the player, so the player itself is always included, with the last input
+         * of the client applied to it.
+         *
+         * @param client - target client.
+         * @param view   - cleared snapshot to fill in.
+         */
+        private void writeVisibleState(ClientStruct client, Snapshot view) {
+            view.setTick(this.tick);
+            view.setInputAck(client.getAppliedInputSequence());
+            int centerX = client.getX() + PLAYER_WIDTH / 2;
+            int centerY = client.getY() + PLAYER_HEIGHT / 2;
+            int minX = centerX - client.getViewWidth() / 2 - AOI_MARGIN;
+            int minY = centerY - client.getViewHeight() / 2 - AOI_MARGIN;
+            int maxX = centerX + client.getViewWidth() / 2 + AOI_MARGIN;
+            int maxY = centerY + client.getViewHeight() / 2 + AOI_MARGIN;
+
+            int count = this.playerGrid.query(minX, minY, maxX, maxY);
+            for (int i = 0; i < count; i++) {
+                view.addPlayer().copyFrom(this.roomSnapshot.getPlayer(this.playerGrid.getResult(i)));
+            }
+        }
 
-                                if (flagHitbox.intersects(playerHitbox)) {
-                                    Logger.log(LogLevel.INFO, "Flag collision detected.");
-                                    handleFlagCollision(object, client);
-                                }
-                            }
-                        }
-                    }
+        /**
+         * Runs a single tick of a room, and records how long it took and how late it
+         * started.
+         *
+         * @param room   - target room.
+         * @param timing - schedule of the tick.
+         */
+        private static void tickRoom(Room room, TickTiming timing) {
+            long startTime = System.nanoTime();
+            try {
+                moveClients(room, timing.tickTime);
+                update(room, timing.tickTime);
+            } catch (RuntimeException e) {
+                Logger.log(LogLevel.ERROR, "Failed to simulate room " + room.getID() + ".", e);
+            }
+            room.recordTick(System.nanoTime() - startTime, startTime - timing.deadline, timing.budgetNanos, timing.lateNanos);
+        }
+
+        /**
+         * Moves the players of a room by their queued inputs, and records their new
+         * positions for lag compensation.
+         *
+         * @param room - target room.
+         * @param now  - simulation time in ms.
+         */
+        private static void moveClients(Room room, long now) {
+            MapData map = room.getMap();
+            for (ClientStruct client : room.getMembers()) {
+                client.applyInputs(maxInputsPerTick, map.getWidth() - PLAYER_WIDTH, map.getHeight() - PLAYER_HEIGHT, room.getObstacles());
+                client.getPositionHistory().record(now, client.getX(), client.getY());
+            }
+        }
+
+        /**
+         * Updates the game state of a room by processing collisions between bullets
+         * and players, updating health, and marking dead clients.
+         *
+         * @param room - target room.
+         */
+        private static void update(Room room, long now) {
+            ClientStruct[] members = room.getMembers();
+            ProjectileStore projectiles = room.getProjectiles();
+            if (members.length == 0) {
+                return;
+            }
+
+            MapData map = room.getMap();
+            HitDetector hitDetector = room.getHitDetector();
+            synchronized (projectiles) {
+                projectiles.advance(now);
+                int hits = hitDetector.detect(projectiles, members, room.getObstacles(), map.getWidth(), map.getHeight(), now);
+                for (int i = 0; i < hits; i++) {
+                    handleBulletCollision(room, hitDetector.getHit(i));
+                }
+            }
+
+            TriggerZones flagZones = room.getFlagZones();
+            int events = flagZones.update(members);
+            for (int i = 0; i < events; i++) {
+                if (flagZones.isEnterEvent(i)) {
+                    handleFlagZoneEntered(room, flagZones.getEventPlayer(i), flagZones.getEventZone(i));
+                }
+            }
+        }
+
+        /////////////////
+        // Room tick task
+        ////////////////
+
+        /**
+         * Ticks a range of rooms, splitting it in halves until a single room is left,
+         * so idle simulation threads can steal the rooms of busy ones.
+         *
+         */
+        private static class RoomTickTask extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final Room[] batch;
+            private final int from, to;
+            private final TickTiming timing;
+
+            /**
+             * Default constructor.
+             *
+             * @param batch  - rooms to tick.
+             * @param from   - index of the first room, inclusive.
+             * @param to     - index of the last room, exclusive.
+             * @param timing - schedule of the tick, shared by every room.
+             */
+            public RoomTickTask(Room[] batch, int from, int to, TickTiming timing) {
+                this.batch = batch;
+                this.from = from;
+                this.to = to;
+                this.timing = timing;
+            }
+
+            @Override
+            protected void compute() {
+                if (this.to - this.from == 1) {
+                    tickRoom(this.batch[this.from], this.timing);
+                    return;
                 }
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new RoomTickTask(this.batch, this.from, middle, this.timing), new RoomTickTask(this.batch, middle, this.to, this.timing));
             }
 
-            removeBullets(bulletsToRemove);
+        }
+
+        /**
+         * Schedule of a single tick, shared by the tasks simulating the rooms.
+         *
+         */
+        private static class TickTiming {
+
+            private final long deadline, tickTime, budgetNanos, lateNanos;
+
+            /**
+             * Default constructor.
+             *
+             * @param deadline    - scheduled start of the tick in
+             *                    {@link System#nanoTime()}.
+             * @param tickTime    - scheduled time of the tick in ms.
+             * @param budgetNanos - tick budget of every room.
+             * @param lateNanos   - start lateness above which a room tick is late.
+             */
+            public TickTiming(long deadline, long tickTime, long budgetNanos, long lateNanos) {
+                this.deadline = deadline;
+                this.tickTime = tickTime;
+                this.budgetNanos = budgetNanos;
+                this.lateNanos = lateNanos;
+            }
+
+        }
+
+    }
+
+    /////////////////
+    // Network events
+    ////////////////
+
+    /**
+     * Dispatches the network reactor events to the client handlers and the UDP
+     * packet processing.
+     *
+     */
+    static class NetworkEvents implements NetworkReactor.Handler {
+
+        @Override
+        public void onConnect(Connection connection) {
+            connection.setAttachment(new ClientHandler(connection));
+        }
+
+        @Override
+        public void onMessage(Connection connection, int opcode, ByteBuffer body) {
+            ((ClientHandler) connection.getAttachment()).handleMessage(opcode, body);
+        }
+
+        @Override
+        public void onDisconnect(Connection connection) {
+            ((ClientHandler) connection.getAttachment()).handleConnectionClosed();
+        }
+
+        @Override
+        public void onDatagram(ByteBuffer data, InetSocketAddress sender) {
+            processIncomingPacket(data, sender);
+        }
+
+        @Override
+        public void onIdle() {
+            closeStaleHandshakes();
+            checkForDisconnectedClients();
+        }
+
+        @Override
+        public void onFatalError() {
+            handleFatalError();
+        }
+
+        /**
+         * Closes connections that didn't send their initial message in time.
+         *
+         */
+        private void closeStaleHandshakes() {
+            long currentTime = System.currentTimeMillis();
+            for (Connection connection : reactor.getConnections()) {
+                ClientHandler handler = (ClientHandler) connection.getAttachment();
+                if (handler != null && !handler.isHandshakeDone() && currentTime - connection.getOpenedTime() > HANDSHAKE_TIMEOUT_MS) {
+                    Logger.log(LogLevel.WARN, "Client didn't send an initial message in time. Closing connection...");
+                    handler.rejectConnection();
+                }
+            }
         }
 
     }
@@ -896,103 +1307,134 @@ public class Server {
     ////////////////
 
     /**
-     * Handles individual client connections in separate threads.
+     * Handles the TCP commands of an individual client connection. Requests are
+     * dispatched through a table indexed by the opcode. All the handling runs on
+     * the network reactor thread.
      *
      */
-    private static class ClientHandler implements Runnable {
+    private static class ClientHandler {
+
+        private static final RequestHandler[] REQUEST_HANDLERS = new RequestHandler[TcpCodec.OPCODE_COUNT];
+
+        static {
+            REQUEST_HANDLERS[TcpCodec.OP_GET_IDLE] = (handler, body) -> handler.handleIdleClientsRequest();
+            REQUEST_HANDLERS[TcpCodec.OP_DISCONNECT] = (handler, body) -> handler.handleDisconnectRequest();
+            REQUEST_HANDLERS[TcpCodec.OP_GO_IDLE] = (handler, body) -> handler.handleGoIdleRequest();
+            REQUEST_HANDLERS[TcpCodec.OP_INVITE_PLAYER] = (handler, body) -> handler.handleJoinRequest(body.getInt());
+            REQUEST_HANDLERS[TcpCodec.OP_ACCEPT_INVITE] = (handler, body) -> handler.handleInviteAnswer(body.getInt(), true);
+            REQUEST_HANDLERS[TcpCodec.OP_DECLINE_INVITE] = (handler, body) -> handler.handleInviteAnswer(body.getInt(), false);
+            REQUEST_HANDLERS[TcpCodec.OP_VIEW_SIZE] = (handler, body) -> handler.handleViewSize(body.getInt(), body.getInt(), body.getInt());
+            REQUEST_HANDLERS[TcpCodec.OP_GET_MAP] = (handler, body) -> handler.handleMapRequest(TcpCodec.getString(body));
+        }
 
-        private final Socket clientSocket;
-        private final ObjectOutputStream out;
-        private final ObjectInputStream in;
+        private final Connection connection;
         private int clientId = -1;
+        private boolean initialized = false, ping = false, disconnected = false, clientExited = false;
 
         /**
          * Default constructor for the client handler.
          *
-         * @param socket - client socket.
-         * @throws IOException - if initialization fails.
+         * @param connection - client connection.
          */
-        public ClientHandler(Socket socket) throws IOException {
-            this.clientSocket = socket;
-            this.out = new ObjectOutputStream(socket.getOutputStream());
-            this.in = new ObjectInputStream(socket.getInputStream());
+        public ClientHandler(Connection connection) {
+            this.connection = connection;
         }
 
         /**
-         * Update method.
+         * Handles a single message received from the client.
          *
+         * @param opcode - message opcode.
+         * @param body   - message body.
          */
-        @Override
-        public void run() {
-            boolean ping = false;
-            try {
-                clientSocket.setSoTimeout(500);
-
-                String initialMessage = in.readUTF();
+        public void handleMessage(int opcode, ByteBuffer body) {
+            if (!this.initialized) {
+                handleInitialMessage(opcode, body);
+                return;
+            }
 
-                if (initialMessage.startsWith("new-client:")) {
-                    handleNewClientRequest(initialMessage);
-                } else if (initialMessage.equals("ping")) {
-                    handleInitialPing();
-                    ping = true;
-                    return;
-                } else {
-                    Logger.log(LogLevel.WARN, "Invalid initial message: " + initialMessage);
-                    return;
-                }
+            Logger.log(LogLevel.DEBUG, "Received message from client " + clientId + " with opcode " + opcode);
 
-                clientHandlers.put(clientId, this);
+            RequestHandler handler = opcode >= 0 && opcode < REQUEST_HANDLERS.length ? REQUEST_HANDLERS[opcode] : null;
+            if (handler != null) {
+                handler.handle(this, body);
+            } else {
+                Logger.log(LogLevel.WARN, "Invalid TCP message received from client " + clientId + " with opcode " + opcode);
+            }
+        }
 
-                clientSocket.setSoTimeout(0); // Unset timeout!
-                while ((initialMessage = in.readUTF()) != null) {
-                    Logger.log(LogLevel.DEBUG, "Received message from client " + clientId + ": " + initialMessage);
-
-                    if (initialMessage.equals("get-idle-clients")) {
-                        handleIdleClientsRequest();
-                    } else if (initialMessage.equals("disconnect")) {
-                        break;
-                    } else if (initialMessage.equals("go-idle")) {
-                        handleGoIdleRequest();
-                    } else if (initialMessage.startsWith("invite-player:")) {
-                        handleJoinRequest(Integer.parseInt(initialMessage.split(":")[1]));
-                    } else {
-                        Logger.log(LogLevel.WARN, "Invalid TCP message received: '" + initialMessage + "'");
-                    }
-                }
-            } catch (IOException e) {
+        /**
+         * Handles the connection being closed, either by the client or the server.
+         *
+         */
+        public void handleConnectionClosed() {
+            if (this.ping || this.disconnected) {
+                return;
+            }
+            if (!this.initialized) {
+                Logger.log(LogLevel.WARN, "Client closed the connection before sending an initial message.");
+                return;
+            }
+            if (!this.clientExited) {
                 Logger.log(LogLevel.WARN, "Client " + clientId + " disconnected without closing the TCP socket!");
-            } catch (Exception e) {
-                Logger.log(LogLevel.ERROR, "Exception occurred in client handler.", e);
-            } finally {
-                if (!ping) {
-                    disconnectClient();
-                }
+            }
+            disconnectClient();
+        }
+
+        /**
+         * Returns true, if the initial message of the client was already handled.
+         *
+         * @return - handshake state.
+         */
+        public boolean isHandshakeDone() {
+            return this.initialized || this.ping;
+        }
+
+        /**
+         * Closes a connection that never became a registered client.
+         *
+         */
+        public void rejectConnection() {
+            this.ping = true; // Nothing to clean up
+            this.connection.close();
+        }
+
+        /**
+         * Handles the first message of the connection, which must be either a ping or
+         * a new client request.
+         *
+         * @param opcode - message opcode.
+         * @param body   - message body.
+         */
+        private void handleInitialMessage(int opcode, ByteBuffer body) {
+            if (opcode == TcpCodec.OP_NEW_CLIENT) {
+                handleNewClientRequest(TcpCodec.getString(body), TcpCodec.getString(body));
+                this.initialized = true;
+                clientHandlers.put(clientId, this);
+            } else if (opcode == TcpCodec.OP_PING) {
+                this.ping = true;
+                handleInitialPing();
+            } else {
+                Logger.log(LogLevel.WARN, "Invalid initial message with opcode " + opcode);
+                rejectConnection();
             }
         }
 
         /**
          * Creates a new client.
          *
-         * @param message - initial message from client.
-         * @throws IOException
+         * @param skinName   - skin of the client.
+         * @param clientName - display name of the client.
          */
-        private void handleNewClientRequest(String message) throws IOException {
-            // Parse client name
-            String clientName = message.split(":")[1];
-            this.clientId = maxClientID++;
-            InetAddress clientAddress = clientSocket.getInetAddress();
+        private void handleNewClientRequest(String skinName, String clientName) {
+            InetAddress clientAddress = this.connection.getInetAddress();
 
             // Register the new client
-            synchronized (clients) {
-                clients.add(new ClientStruct(clientId, clientName, clientAddress));
-            }
+            this.clientId = clients.register(clientName, skinName, clientAddress).getID();
 
             Logger.log(LogLevel.CONNECTION, "Client '" + clientName + "' connected. Assigned ID: " + clientId);
 
             // Send client ID and UDP port
-            out.writeInt(clientId);
-            out.writeInt(UDP_PORT);
-            out.flush();
+            this.connection.write(TcpCodec.encodeWelcome(clientId, UDP_PORT, tickRate));
 
             Logger.log(LogLevel.CONNECTION, "Sent UDP port and ID back to client '" + clientName + "'");
         }
@@ -1001,13 +1443,9 @@ public class Server {
          * Handles the request for idle clients, or in other words cliets that are not
          * connected in any lobbies, and can be invited into one.
          *
-         * @throws IOException
          */
-        private void handleIdleClientsRequest() throws IOException {
-            String clientsData = getPlayerNameData(clients, clientId);
-
-            sendMessage("idle-clients:" + clientsData);
-            out.flush();
+        private void handleIdleClientsRequest() {
+            sendMessage(encodePlayerNameData(clients.getAll(), clientId));
 
             Logger.log(LogLevel.TCPREQUESTS, "Handled 'get-idle-clients' request from client " + clientId);
         }
@@ -1016,12 +1454,10 @@ public class Server {
          * Handles a player ping by responding with a message the client expects to
          * prove server works, and then disposes of this connection.
          *
-         * @throws IOException
          */
-        private void handleInitialPing() throws IOException {
-            out.writeUTF("flaggi-pong");
-            out.flush();
-            clientSocket.close();
+        private void handleInitialPing() {
+            this.connection.write(TcpCodec.encode(TcpCodec.OP_PONG));
+            this.connection.closeAfterWrite();
             Logger.log(LogLevel.PING, "Received initial ping from client. Closing connection...");
         }
 
@@ -1033,23 +1469,91 @@ public class Server {
         private void handleJoinRequest(int playerID) {
             ClientStruct targetClient = getClient(playerID);
             ClientStruct localClient = getClient(this.clientId);
-            if (targetClient.getRoomID() == -1) {
-                MapData map = maps.get((int) (Math.random() * maps.size()));
-                activeMaps.put(targetClient.getID(), map);
-                activeMaps.put(localClient.getID(), map);
-                String json = "";
-                try {
-                    json = PersistentValue.toJson(map);
-                } catch (JsonProcessingException e) {
-                    Logger.log(LogLevel.ERROR, "Failed to serialize map data.", e);
-                    handleFatalError();
+            if (targetClient.getRoomID() == -1 && localClient.getRoomID() == -1) {
+                MapPayload payload = maps.get((int) (Math.random() * maps.size()));
+                Room room = new Room(playerID, payload.getMap(), obstaclesByHash.get(payload.getHash()), payload.getHash());
+                for (ObjectData object : payload.getMap().getGameObjects()) {
+                    if (object.getObjectType() == ObjectType.BLUE_FLAG) {
+                        room.addFlagZone(Room.TEAM_BLUE, object.getX(), object.getY(), FLAG_ZONE_WIDTH, FLAG_ZONE_HEIGHT);
+                    } else if (object.getObjectType() == ObjectType.RED_FLAG) {
+                        room.addFlagZone(Room.TEAM_RED, object.getX(), object.getY(), FLAG_ZONE_WIDTH, FLAG_ZONE_HEIGHT);
+                    }
                 }
-                Logger.log(LogLevel.INFO, json);
-                targetClient.setRoomID(playerID);
-                localClient.setRoomID(playerID);
-                sendTCPMessageToClient(playerID, "enter-game/" + json + "/false");
-                sendTCPMessageToClient(this.clientId, "enter-game/" + json + "/true");
+                room.addMember(targetClient);
+                room.addMember(localClient);
+                respawnClient(room, targetClient);
+                respawnClient(room, localClient);
+                openRoom(room);
+                Logger.log(LogLevel.INFO, "Room " + playerID + " entered map '" + payload.getMap().getName() + "'");
+                sendPlayerInfo(targetClient, localClient);
+                sendPlayerInfo(localClient, targetClient);
+                sendTCPMessageToClient(playerID, TcpCodec.encodeEnterGame(payload.getHash(), false));
+                sendTCPMessageToClient(this.clientId, TcpCodec.encodeEnterGame(payload.getHash(), true));
+            }
+        }
+
+        /**
+         * Handles an answer to an invite. Nothing is done, as the match starts as
+         * soon as the player is invited, the answer is only logged.
+         *
+         * @param playerID - player ID of the inviting client.
+         * @param accepted - whether the invite was accepted.
+         */
+        private void handleInviteAnswer(int playerID, boolean accepted) {
+            Logger.log(LogLevel.TCPREQUESTS, "Client " + clientId + (accepted ? " accepted" : " declined") + " the invite from client " + playerID);
+        }
+
+        /**
+         * Sends the display data of a player to another client. Display data is only
+         * sent once when entering a game, UDP packets carry just the player ID.
+         *
+         * @param receiver - client to send the data to.
+         * @param player   - player the data is about.
+         */
+        private void sendPlayerInfo(ClientStruct receiver, ClientStruct player) {
+            sendTCPMessageToClient(receiver.getID(), TcpCodec.encodePlayerInfo(player.getID(), player.getSkinName(), player.getDisplayName()));
+        }
+
+        /**
+         * Updates the size of the client game view, which limits the game state sent
+         * to the client, and its interpolation delay, which its shots are lag
+         * compensated by.
+         *
+         * @param width              - view width.
+         * @param height             - view height.
+         * @param interpolationDelay - delay of the other players on the client in
+         *                           ms.
+         */
+        private void handleViewSize(int width, int height, int interpolationDelay) {
+            ClientStruct client = getClient(this.clientId);
+            if (client != null) {
+                client.setViewSize(width, height);
+                client.setInterpolationDelay(interpolationDelay);
+            }
+        }
+
+        /**
+         * Sends the compressed data of a map the client doesn't have cached.
+         *
+         * @param mapHash - content hash of the map.
+         */
+        private void handleMapRequest(String mapHash) {
+            MapPayload payload = mapsByHash.get(mapHash);
+            if (payload == null) {
+                Logger.log(LogLevel.WARN, "Client " + clientId + " requested an unknown map: " + mapHash);
+                return;
             }
+            sendMessage(TcpCodec.encodeMapData(mapHash, payload.getData()));
+            Logger.log(LogLevel.TCPREQUESTS, "Sent map '" + payload.getMap().getName() + "' to client " + clientId);
+        }
+
+        /**
+         * Handles the client leaving the game.
+         *
+         */
+        private void handleDisconnectRequest() {
+            this.clientExited = true;
+            disconnectClient();
         }
 
         /**
@@ -1058,51 +1562,59 @@ public class Server {
          */
         private void handleGoIdleRequest() {
             ClientStruct c = getClient(this.clientId);
-            c.setRoomID(-1);
-            checkForAloneInRoom(c.getRoomID(), new int[] { this.clientId });
+            if (c != null) {
+                leaveRoom(c);
+            }
         }
 
         /**
-         * Sends a message to this client.
+         * Sends a message to this client. The message is queued, and written by the
+         * network reactor.
          *
-         * @param message The message to send.
+         * @param message The encoded frame to send.
          */
-        public synchronized void sendMessage(String message) {
-            try {
-                out.writeUTF(message);
-                out.flush();
-                Logger.log(LogLevel.DEBUG, "Sent message to client " + clientId + ": " + message);
-            } catch (IOException e) {
-                Logger.log(LogLevel.ERROR, "Failed to send message to client " + clientId, e);
-            }
+        public void sendMessage(ByteBuffer message) {
+            Logger.log(LogLevel.DEBUG, "Sent message to client " + clientId + " with opcode " + message.get(message.position() + Integer.BYTES));
+            this.connection.write(message);
         }
 
         /**
-         * Disconnects the client and removes it from the handlers list.
+         * Disconnects the client and removes it from the handlers list. Calling it
+         * more than once has no effect.
          *
          */
         private void disconnectClient() {
-            try {
-                String log = "Disconnecting client " + clientId;
-                try {
-                    log = "Disconnecting client " + clients.get(clientId).getDisplayName() + " with ID " + clientId;
-                } catch (Exception e) {
-                }
-                Logger.log(LogLevel.CONNECTION, log);
-
-                int roomID = getClient(clientId).getRoomID();
+            if (this.disconnected) {
+                return;
+            }
+            this.disconnected = true;
 
-                removeClient(clientId);
-                clientSocket.close();
-                refreshIDNumberIfNoUsers();
+            ClientStruct client = getClient(clientId);
+            if (client != null) {
+                Logger.log(LogLevel.CONNECTION, "Disconnecting client " + client.getDisplayName() + " with ID " + clientId);
+            } else {
+                Logger.log(LogLevel.CONNECTION, "Disconnecting client " + clientId);
+            }
 
-                checkForAloneInRoom(roomID, new int[] { clientId });
+            clientHandlers.remove(clientId);
+            clients.remove(clientId);
+            this.connection.close();
 
-            } catch (IOException e) {
-                Logger.log(LogLevel.ERROR, "Failed to disconnect client " + clientId, e);
+            if (client != null) {
+                leaveRoom(client);
             }
         }
 
+        /**
+         * Handler of a single request opcode.
+         *
+         */
+        private interface RequestHandler {
+
+            public void handle(ClientHandler handler, ByteBuffer body);
+
+        }
+
     }
 
 }
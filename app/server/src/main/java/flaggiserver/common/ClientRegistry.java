@@ -0,0 +1,233 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package flaggiserver.common;
+
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Registry of the connected clients, indexed by the client ID. Lookups are
+ * lock-free and O(1), through an open addressing table keyed by the primitive
+ * ID. Registrations are rare, so every change builds a new immutable table and
+ * publishes it atomically. Readers always see a consistent table, and can
+ * iterate the array of all clients without any locking.
+ * <p>
+ * IDs of removed clients are recycled, so they stay small, but only after a
+ * delay, so stale packets and messages of a removed client are never mistaken
+ * for a new one.
+ *
+ */
+public class ClientRegistry {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    private static final int MIN_CAPACITY = 16; // Power of two
+    private static final int EMPTY = -1;
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final long idReuseDelayMs;
+    private final ArrayDeque<Integer> releasedIds;
+    private final ArrayDeque<Long> releaseTimes;
+    private volatile Table table;
+    private int nextId;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor.
+     *
+     * @param idReuseDelayMs - time after which the ID of a removed client can be
+     *                       assigned again.
+     */
+    public ClientRegistry(long idReuseDelayMs) {
+        this.idReuseDelayMs = idReuseDelayMs;
+        this.releasedIds = new ArrayDeque<Integer>();
+        this.releaseTimes = new ArrayDeque<Long>();
+        this.table = new Table(new ClientStruct[0]);
+    }
+
+    /////////////////
+    // Reading
+    ////////////////
+
+    /**
+     * Accesor for the client using the client ID. Lock-free.
+     *
+     * @param id - client ID.
+     * @return a {@code ClientStruct} object reference. If not found, returns
+     *         null.
+     */
+    public ClientStruct get(int id) {
+        return this.table.get(id);
+    }
+
+    /**
+     * Returns a consistent snapshot of all clients, in the order they were
+     * registered. The array is shared, and must not be modified. Lock-free.
+     *
+     * @return - array of all clients.
+     */
+    public ClientStruct[] getAll() {
+        return this.table.clients;
+    }
+
+    public int size() {
+        return this.table.clients.length;
+    }
+
+    public boolean isEmpty() {
+        return this.table.clients.length == 0;
+    }
+
+    /////////////////
+    // Writing
+    ////////////////
+
+    /**
+     * Assigns a new client ID, and registers a new client with it.
+     *
+     * @param displayName - user selected name.
+     * @param skinName    - name of the player skin.
+     * @param inetAddress - client address.
+     * @return - the new client.
+     */
+    public synchronized ClientStruct register(String displayName, String skinName, InetAddress inetAddress) {
+        ClientStruct client = new ClientStruct(allocateId(), displayName, skinName, inetAddress);
+        ClientStruct[] clients = Arrays.copyOf(this.table.clients, this.table.clients.length + 1);
+        clients[clients.length - 1] = client;
+        this.table = new Table(clients);
+        return client;
+    }
+
+    /**
+     * Removes a client, and releases its ID. Calling it more than once has no
+     * effect.
+     *
+     * @param id - client ID.
+     * @return - the removed client, or {@code null} if it wasn't registered.
+     */
+    public synchronized ClientStruct remove(int id) {
+        ClientStruct removed = this.table.get(id);
+        if (removed == null) {
+            return null;
+        }
+        ClientStruct[] clients = new ClientStruct[this.table.clients.length - 1];
+        int count = 0;
+        for (ClientStruct client : this.table.clients) {
+            if (client != removed) {
+                clients[count++] = client;
+            }
+        }
+        this.table = new Table(clients);
+        this.releasedIds.add(id);
+        this.releaseTimes.add(System.currentTimeMillis());
+        return removed;
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    /**
+     * Returns the oldest released ID, if it was released long enough ago, or a
+     * never used one.
+     *
+     * @return - free client ID.
+     */
+    private int allocateId() {
+        Long releaseTime = this.releaseTimes.peek();
+        if (releaseTime != null && System.currentTimeMillis() - releaseTime >= this.idReuseDelayMs) {
+            this.releaseTimes.poll();
+            return this.releasedIds.poll();
+        }
+        return this.nextId++;
+    }
+
+    /////////////////
+    // Table
+    ////////////////
+
+    /**
+     * Immutable open addressing table with linear probing. It is kept at most
+     * half full, so probe sequences stay short.
+     *
+     */
+    private static final class Table {
+
+        private final ClientStruct[] clients, slots;
+        private final int[] keys;
+        private final int mask;
+
+        Table(ClientStruct[] clients) {
+            int capacity = MIN_CAPACITY;
+            while (capacity < clients.length * 2) {
+                capacity <<= 1;
+            }
+            this.clients = clients;
+            this.slots = new ClientStruct[capacity];
+            this.keys = new int[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(this.keys, EMPTY);
+            for (ClientStruct client : clients) {
+                int slot = hash(client.getID()) & this.mask;
+                while (this.keys[slot] != EMPTY) {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.keys[slot] = client.getID();
+                this.slots[slot] = client;
+            }
+        }
+
+        ClientStruct get(int id) {
+            int slot = hash(id) & this.mask;
+            int key;
+            while ((key = this.keys[slot]) != EMPTY) {
+                if (key == id) {
+                    return this.slots[slot];
+                }
+                slot = (slot + 1) & this.mask;
+            }
+            return null;
+        }
+
+        private static int hash(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+    }
+
+}
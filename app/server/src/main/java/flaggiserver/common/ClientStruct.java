@@ -27,8 +27,13 @@
 package flaggiserver.common;
 
 import java.net.InetAddress;
-import java.util.ArrayList;
-import java.util.List;
+import java.net.InetSocketAddress;
+
+import flaggishared.common.ColliderIndex;
+import flaggishared.common.PlayerMovement;
+import flaggishared.network.PlayerState;
+import flaggishared.network.PlayerState.Animation;
+import flaggishared.network.SnapshotHistory;
 
 /**
  * Structure for a client object.
@@ -36,27 +41,57 @@ import java.util.List;
  */
 public class ClientStruct {
 
+    private static final int INPUT_QUEUE_SIZE = 16; // Must be a power of two
+    private static final int SNAPSHOT_HISTORY_SIZE = 32;
+    private static final int PROJECTILE_EVENT_QUEUE_SIZE = 256; // Must be a power of two
+    private static final int POSITION_HISTORY_SIZE = 32; // Over a second of ticks, must be a power of two
+    private static final int DEFAULT_VIEW_WIDTH = 1920;
+    private static final int DEFAULT_VIEW_HEIGHT = 1080;
+    private static final int MAX_VIEW_WIDTH = 3840;
+    private static final int MAX_VIEW_HEIGHT = 2160;
+    private static final int MAX_INTERPOLATION_DELAY_MS = 1000; // Rewinds are cut by the rewind limit anyway
+
     private final int ID;
-    private final String DISPLAY_NAME;
+    private final String DISPLAY_NAME, SKIN_NAME;
     private final InetAddress INET_ADRESS;
+    private final int[] INPUT_QUEUE, INPUT_SEQUENCES, POSITION;
+    private final SnapshotHistory SNAPSHOT_HISTORY;
+    private final ProjectileEventQueue PROJECTILE_EVENTS;
+    private final PositionHistory POSITION_HISTORY;
 
-    private String animationFrame;
-    private int x, y, health, roomID;
-    private long lastReceivedTime;
-    private List<Bullet> playerObjects;
+    private Animation animation;
+    private boolean inverted;
+    private int health, lastInputSequence, appliedInputSequence, inputHead, inputTail;
+    private volatile int roomID; // Read by the UDP workers and the game loop
+    private volatile long lastReceivedTime;
+    private long triggerZones;
+    private volatile InetSocketAddress udpAddress;
+    private volatile int ackedSnapshotTick, ackedEventSequence, viewWidth, viewHeight, interpolationDelay;
 
     /**
      * Default constructor
      * 
      * @param id          - server given player ID.
      * @param displayName - user selected ID.
+     * @param skinName    - name of the player skin.
      * @param inetAddress - client address.
      */
-    public ClientStruct(int id, String displayName, InetAddress inetAddress) {
-        this.playerObjects = new ArrayList<Bullet>();
+    public ClientStruct(int id, String displayName, String skinName, InetAddress inetAddress) {
+        this.INPUT_QUEUE = new int[INPUT_QUEUE_SIZE];
+        this.INPUT_SEQUENCES = new int[INPUT_QUEUE_SIZE];
+        this.POSITION = new int[2];
+        this.SNAPSHOT_HISTORY = new SnapshotHistory(SNAPSHOT_HISTORY_SIZE);
+        this.PROJECTILE_EVENTS = new ProjectileEventQueue(PROJECTILE_EVENT_QUEUE_SIZE);
+        this.POSITION_HISTORY = new PositionHistory(POSITION_HISTORY_SIZE);
+        this.viewWidth = DEFAULT_VIEW_WIDTH;
+        this.viewHeight = DEFAULT_VIEW_HEIGHT;
+        this.lastInputSequence = -1;
+        this.appliedInputSequence = -1;
+        this.animation = Animation.IDLE;
         this.roomID = -1;
         this.ID = id;
         this.DISPLAY_NAME = displayName;
+        this.SKIN_NAME = skinName;
         this.INET_ADRESS = inetAddress;
         updateLastReceivedTime();
     }
@@ -69,16 +104,20 @@ public class ClientStruct {
         return DISPLAY_NAME;
     }
 
+    public String getSkinName() {
+        return SKIN_NAME;
+    }
+
     public InetAddress getINET_ADRESS() {
         return INET_ADRESS;
     }
 
     public int getX() {
-        return x;
+        return POSITION[0];
     }
 
     public int getY() {
-        return y;
+        return POSITION[1];
     }
 
     public int getHealth() {
@@ -95,19 +134,123 @@ public class ClientStruct {
 
     public void setRoomID(int roomID) {
         this.roomID = roomID;
+        this.ackedSnapshotTick = 0; // Snapshots of the old room can't be used as a baseline
+        this.triggerZones = 0;
+        this.PROJECTILE_EVENTS.requestResync(); // Projectiles of the new room are sent from scratch
+    }
+
+    /**
+     * Gets the trigger zones of the room the player is inside of.
+     *
+     * @return - bit mask of the zone indices.
+     */
+    public long getTriggerZones() {
+        return this.triggerZones;
     }
 
-    public String getAnimationFrame() {
-        return this.animationFrame;
+    public void setTriggerZones(long zones) {
+        this.triggerZones = zones;
+    }
+
+    public Animation getAnimation() {
+        return this.animation;
+    }
+
+    public boolean isInverted() {
+        return this.inverted;
     }
 
     public void setPosition(int x, int y) {
-        this.x = x;
-        this.y = y;
+        this.POSITION[0] = x;
+        this.POSITION[1] = y;
+    }
+
+    public InetSocketAddress getUdpAddress() {
+        return this.udpAddress;
+    }
+
+    public void setUdpAddress(InetSocketAddress udpAddress) {
+        this.udpAddress = udpAddress;
+    }
+
+    public int getAckedSnapshotTick() {
+        return this.ackedSnapshotTick;
+    }
+
+    public void setAckedSnapshotTick(int tick) {
+        this.ackedSnapshotTick = tick;
+    }
+
+    public int getAckedEventSequence() {
+        return this.ackedEventSequence;
+    }
+
+    public void setAckedEventSequence(int sequence) {
+        this.ackedEventSequence = sequence;
+    }
+
+    /**
+     * Returns the projectile events this client didn't acknowledge yet. Only
+     * accessed by the game loop.
+     *
+     * @return - projectile event queue.
+     */
+    public ProjectileEventQueue getProjectileEvents() {
+        return this.PROJECTILE_EVENTS;
+    }
+
+    /**
+     * Returns the positions of the player in the last ticks, used for lag
+     * compensation. Only accessed by the simulation of the room.
+     *
+     * @return - position history.
+     */
+    public PositionHistory getPositionHistory() {
+        return this.POSITION_HISTORY;
     }
 
-    public void setAnimationFrame(String animationFrame) {
-        this.animationFrame = animationFrame;
+    /**
+     * Returns the snapshots sent to this client, used as the delta compression
+     * baselines. Only accessed by the game loop.
+     *
+     * @return - snapshot history.
+     */
+    public SnapshotHistory getSnapshotHistory() {
+        return this.SNAPSHOT_HISTORY;
+    }
+
+    public int getViewWidth() {
+        return this.viewWidth;
+    }
+
+    public int getViewHeight() {
+        return this.viewHeight;
+    }
+
+    /**
+     * Sets the size of the client game view, which limits the part of the game
+     * state the client gets. The size is clamped to a sane range.
+     *
+     * @param width  - view width.
+     * @param height - view height.
+     */
+    public void setViewSize(int width, int height) {
+        this.viewWidth = Math.max(1, Math.min(MAX_VIEW_WIDTH, width));
+        this.viewHeight = Math.max(1, Math.min(MAX_VIEW_HEIGHT, height));
+    }
+
+    /**
+     * Gets how far in the past the client shows the other players, on top of the
+     * age of its snapshots.
+     *
+     * @return - interpolation delay in ms.
+     */
+    public int getInterpolationDelay() {
+        return this.interpolationDelay;
+    }
+
+    public void setInterpolationDelay(int delay) {
+        this.interpolationDelay = Math.max(0, Math.min(MAX_INTERPOLATION_DELAY_MS, delay));
     }
 
     public long getLastReceivedTime() {
@@ -118,16 +261,83 @@ public class ClientStruct {
         this.lastReceivedTime = System.currentTimeMillis();
     }
 
-    public List<Bullet> getPlayerObjects() {
-        return this.playerObjects;
+    /////////////////
+    // Input
+    ////////////////
+
+    /**
+     * Queues an input received from the client. Inputs older than the last queued
+     * one are dropped, if the queue is full, the oldest input is discarded.
+     *
+     * @param sequence - input sequence number.
+     * @param buttons  - held buttons.
+     * @return - false if the input was out of date.
+     */
+    public synchronized boolean queueInput(int sequence, int buttons) {
+        if (sequence <= this.lastInputSequence) {
+            return false;
+        }
+        this.lastInputSequence = sequence;
+        if (this.inputTail - this.inputHead == INPUT_QUEUE_SIZE) {
+            this.inputHead++;
+        }
+        this.INPUT_SEQUENCES[this.inputTail & (INPUT_QUEUE_SIZE - 1)] = sequence;
+        this.INPUT_QUEUE[this.inputTail++ & (INPUT_QUEUE_SIZE - 1)] = buttons;
+        return true;
+    }
+
+    /**
+     * Applies at most the given number of queued inputs, each one moving the
+     * player by a single step, blocked by the obstacles of the map.
+     *
+     * @param maxInputs - input limit, so clients can't move faster by sending more
+     *                  packets.
+     * @param maxX      - largest allowed X coordinate.
+     * @param maxY      - largest allowed Y coordinate.
+     * @param obstacles - static obstacles of the map.
+     */
+    public synchronized void applyInputs(int maxInputs, int maxX, int maxY, ColliderIndex obstacles) {
+        for (int i = 0; i < maxInputs && this.inputHead != this.inputTail; i++) {
+            this.appliedInputSequence = this.INPUT_SEQUENCES[this.inputHead & (INPUT_QUEUE_SIZE - 1)];
+            int buttons = this.INPUT_QUEUE[this.inputHead++ & (INPUT_QUEUE_SIZE - 1)];
+            PlayerMovement.move(this.POSITION, buttons, maxX, maxY, obstacles);
+            this.animation = PlayerMovement.getAnimation(buttons);
+            this.inverted = PlayerMovement.isFacingRight(buttons, this.inverted);
+        }
+    }
+
+    /**
+     * Removes all queued inputs, used when the player is moved by the server. The
+     * removed inputs count as applied, so the client doesn't replay them.
+     *
+     */
+    public synchronized void clearInputs() {
+        this.inputHead = this.inputTail;
+        this.appliedInputSequence = this.lastInputSequence;
     }
 
-    public void addPlayerObject(Bullet bullet) {
-        this.playerObjects.add(bullet);
+    /**
+     * Gets the sequence number of the last input applied to the player, so the
+     * client can predict the rest.
+     *
+     * @return - input sequence number, -1 if none was applied yet.
+     */
+    public synchronized int getAppliedInputSequence() {
+        return this.appliedInputSequence;
     }
 
-    public void removePlayerObject(Bullet bullet) {
-        this.playerObjects.remove(bullet);
+    /**
+     * Writes the current state of this client into a network state struct.
+     * 
+     * @param state - target state.
+     */
+    public void writeState(PlayerState state) {
+        state.id = this.ID;
+        state.x = this.POSITION[0];
+        state.y = this.POSITION[1];
+        state.health = this.health;
+        state.animation = this.animation;
+        state.inverted = this.inverted;
     }
 
 }
\ No newline at end of file
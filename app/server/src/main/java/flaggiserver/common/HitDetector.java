@@ -0,0 +1,216 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.common;
+
+import java.util.Arrays;
+
+import flaggishared.common.ColliderIndex;
+import flaggishared.common.PlayerMovement;
+
+/**
+ * Hit detection of the projectiles of a room. Every call the players are
+ * inserted into a uniform grid, and each projectile only tests the players in
+ * the cells around the path it travelled since the last tick. The path is
+ * swept against the player hitboxes, so fast projectiles can't tunnel through
+ * players between ticks, however low the tick rate is. Projectiles stop at the
+ * first obstacle of the map on their path.
+ * <p>
+ * Hits are lag compensated: a projectile is tested against the players where
+ * they were its rewind time ago, looked up in their position histories, as
+ * that's where its shooter saw them. Players are inserted into the grid by the
+ * area they covered during the longest rewind, so the grid still finds them.
+ * Only primitive math is used, and nothing is allocated once the arrays are
+ * large enough, so a room keeps one detector and reuses it every tick.
+ *
+ */
+public class HitDetector {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    public static final int PLAYER_HITBOX_OFFSET_X = PlayerMovement.HITBOX_OFFSET_X;
+    public static final int PLAYER_HITBOX_OFFSET_Y = PlayerMovement.HITBOX_OFFSET_Y;
+    public static final int PLAYER_HITBOX_WIDTH = PlayerMovement.HITBOX_WIDTH;
+    public static final int PLAYER_HITBOX_HEIGHT = PlayerMovement.HITBOX_HEIGHT;
+    public static final int PROJECTILE_SIZE = 5;
+    private static final int CELL_SIZE = 128; // About a player hitbox, so a projectile only checks a few cells
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final SpatialGrid playerGrid;
+    private final int[] bounds, position;
+    private ClientStruct[] hits;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor.
+     *
+     */
+    public HitDetector() {
+        this.playerGrid = new SpatialGrid(CELL_SIZE);
+        this.hits = new ClientStruct[16];
+        this.bounds = new int[4];
+        this.position = new int[2];
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Finds the players hit by projectiles on their way since the last tick. A
+     * projectile never hits its owner, and hits at most one player, the first one
+     * on its path (on a tie, the first one in the player array), unless an
+     * obstacle is in the way. The projectiles that hit someone or something are
+     * removed, and the hit players are accessible through {@link #getHit(int)}
+     * until the next call, once per hit.
+     *
+     * @param projectiles - live projectiles.
+     * @param players     - players that can be hit.
+     * @param obstacles   - static obstacles of the map.
+     * @param width       - width of the area the players are in.
+     * @param height      - height of the area the players are in.
+     * @param now         - current time in ms, the rewind times are subtracted
+     *                    from.
+     * @return - number of hits.
+     */
+    public int detect(ProjectileStore projectiles, ClientStruct[] players, ColliderIndex obstacles, int width, int height, long now) {
+        if (projectiles.isEmpty()) {
+            return 0;
+        }
+        int maxRewind = 0;
+        for (int p = 0; p < projectiles.size(); p++) {
+            maxRewind = Math.max(maxRewind, projectiles.getRewindTime(p));
+        }
+
+        // Players are inserted by the top left corner of the hitbox area covered
+        // since the longest rewind, the queries are grown by the largest area
+        this.playerGrid.reset(width, height);
+        int spreadX = 0;
+        int spreadY = 0;
+        for (int i = 0; i < players.length; i++) {
+            ClientStruct player = players[i];
+            this.bounds[0] = this.bounds[2] = player.getX();
+            this.bounds[1] = this.bounds[3] = player.getY();
+            if (maxRewind > 0) {
+                player.getPositionHistory().includeBounds(now - maxRewind, this.bounds);
+            }
+            this.playerGrid.insert(i, this.bounds[0] + PLAYER_HITBOX_OFFSET_X, this.bounds[1] + PLAYER_HITBOX_OFFSET_Y);
+            spreadX = Math.max(spreadX, this.bounds[2] - this.bounds[0]);
+            spreadY = Math.max(spreadY, this.bounds[3] - this.bounds[1]);
+        }
+
+        int hitCount = 0;
+        for (int p = projectiles.size() - 1; p >= 0; p--) {
+            int fromX = projectiles.getPreviousX(p);
+            int fromY = projectiles.getPreviousY(p);
+            int toX = projectiles.getX(p);
+            int toY = projectiles.getY(p);
+            int owner = projectiles.getOwnerId(p);
+            int rewind = projectiles.getRewindTime(p);
+            int count = this.playerGrid.query(Math.min(fromX, toX) - PLAYER_HITBOX_WIDTH - spreadX, Math.min(fromY, toY) - PLAYER_HITBOX_HEIGHT - spreadY, Math.max(fromX, toX) + PROJECTILE_SIZE, Math.max(fromY, toY) + PROJECTILE_SIZE);
+
+            int target = -1;
+            double obstacleTime = obstacles.sweep(fromX, fromY, toX, toY, PROJECTILE_SIZE);
+            double targetTime = obstacleTime;
+            for (int r = 0; r < count; r++) {
+                int i = this.playerGrid.getResult(r);
+                ClientStruct player = players[i];
+                if (player.getID() == owner) {
+                    continue;
+                }
+                this.position[0] = player.getX();
+                this.position[1] = player.getY();
+                if (rewind > 0) {
+                    player.getPositionHistory().rewind(now - rewind, this.position);
+                }
+                double time = sweep(fromX, fromY, toX, toY, this.position[0] + PLAYER_HITBOX_OFFSET_X, this.position[1] + PLAYER_HITBOX_OFFSET_Y);
+                if (time < targetTime || (time == targetTime && target != -1 && i < target)) {
+                    target = i;
+                    targetTime = time;
+                }
+            }
+            if (target != -1) {
+                projectiles.remove(p);
+                if (hitCount == this.hits.length) {
+                    this.hits = Arrays.copyOf(this.hits, hitCount * 2);
+                }
+                this.hits[hitCount++] = players[target];
+            } else if (obstacleTime != Double.MAX_VALUE) {
+                projectiles.remove(p); // Stopped by an obstacle
+            }
+        }
+        Arrays.fill(this.hits, hitCount, this.hits.length, null); // Don't keep removed clients alive
+        return hitCount;
+    }
+
+    /**
+     * Returns a player hit during the last detection.
+     *
+     * @param index - hit index.
+     * @return - the hit player.
+     */
+    public ClientStruct getHit(int index) {
+        return this.hits[index];
+    }
+
+    /**
+     * Sweeps a projectile along a segment against a player hitbox. The projectile
+     * box overlaps the hitbox exactly when its corner is inside the hitbox grown
+     * by the projectile size, so the segment of the corner is clipped against the
+     * grown hitbox, one axis at a time. Touching borders don't count, same as in
+     * {@link #intersects(int, int, int, int, int, int, int, int)}.
+     *
+     * @param fromX   - X position of the projectile at the start of the tick.
+     * @param fromY   - Y position of the projectile at the start of the tick.
+     * @param toX     - X position of the projectile at the end of the tick.
+     * @param toY     - Y position of the projectile at the end of the tick.
+     * @param hitboxX - X position of the player hitbox.
+     * @param hitboxY - Y position of the player hitbox.
+     * @return - fraction of the path travelled before the hit, between 0 and 1,
+     *         or {@code Double.MAX_VALUE} if the projectile missed.
+     */
+    public static double sweep(int fromX, int fromY, int toX, int toY, int hitboxX, int hitboxY) {
+        return ColliderIndex.clip(fromX, fromY, toX, toY, hitboxX - PROJECTILE_SIZE, hitboxY - PROJECTILE_SIZE, hitboxX + PLAYER_HITBOX_WIDTH, hitboxY + PLAYER_HITBOX_HEIGHT);
+    }
+
+    /**
+     * Checks if two rectangles overlap. Touching borders don't count.
+     *
+     * @return - true if the rectangles overlap.
+     */
+    public static boolean intersects(int ax, int ay, int aWidth, int aHeight, int bx, int by, int bWidth, int bHeight) {
+        return bx < ax + aWidth && bx + bWidth > ax && by < ay + aHeight && by + bHeight > ay;
+    }
+
+}
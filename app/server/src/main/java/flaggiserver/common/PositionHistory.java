@@ -0,0 +1,165 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.common;
+
+/**
+ * Fixed size ring buffer of the timestamped positions of a player, recorded
+ * once per tick. Used for lag compensation: hits are tested against where a
+ * player was at an earlier time, as the shooter saw it. Positions between two
+ * records are interpolated. Lookups only use primitive math and never allocate.
+ * Not thread-safe, only the simulation of the room of the player uses it.
+ *
+ */
+public class PositionHistory {
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final long[] time;
+    private final int[] x, y;
+    private final int mask;
+    private int head, count; // Head is the index of the next record
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor.
+     *
+     * @param capacity - number of positions kept, must be a power of two.
+     */
+    public PositionHistory(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.time = new long[capacity];
+        this.x = new int[capacity];
+        this.y = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Records a position, overwriting the oldest one when full. Times must not
+     * decrease.
+     *
+     * @param time - time of the position in ms.
+     * @param x    - X position.
+     * @param y    - Y position.
+     */
+    public void record(long time, int x, int y) {
+        this.time[this.head] = time;
+        this.x[this.head] = x;
+        this.y[this.head] = y;
+        this.head = (this.head + 1) & this.mask;
+        this.count = Math.min(this.count + 1, this.mask + 1);
+    }
+
+    /**
+     * Finds the position at a given time, interpolated between the records
+     * around it. Times before the oldest record give the oldest position, times
+     * after the newest record give the newest one.
+     *
+     * @param time     - time in ms.
+     * @param position - target array, gets the [x, y] position.
+     * @return - false if nothing was recorded, and the target is left unchanged.
+     */
+    public boolean rewind(long time, int[] position) {
+        if (this.count == 0) {
+            return false;
+        }
+        int newer = index(0);
+        for (int age = 1; age < this.count && this.time[newer] > time; age++) {
+            int older = index(age);
+            if (this.time[older] <= time) {
+                double fraction = (double) (time - this.time[older]) / (this.time[newer] - this.time[older]);
+                position[0] = this.x[older] + (int) Math.round((this.x[newer] - this.x[older]) * fraction);
+                position[1] = this.y[older] + (int) Math.round((this.y[newer] - this.y[older]) * fraction);
+                return true;
+            }
+            newer = older;
+        }
+        position[0] = this.x[newer];
+        position[1] = this.y[newer];
+        return true;
+    }
+
+    /**
+     * Grows a bounding box by the positions the player had since a given time,
+     * including the interpolated position at that time.
+     *
+     * @param since  - start time in ms.
+     * @param bounds - box to grow, as [min x, min y, max x, max y].
+     */
+    public void includeBounds(long since, int[] bounds) {
+        for (int age = 0; age < this.count; age++) {
+            int i = index(age);
+            bounds[0] = Math.min(bounds[0], this.x[i]);
+            bounds[1] = Math.min(bounds[1], this.y[i]);
+            bounds[2] = Math.max(bounds[2], this.x[i]);
+            bounds[3] = Math.max(bounds[3], this.y[i]);
+            if (this.time[i] <= since) {
+                return; // Older positions can't be interpolated into
+            }
+        }
+    }
+
+    /**
+     * Forgets all positions, after the player got moved without travelling, like
+     * when respawning.
+     *
+     */
+    public void clear() {
+        this.count = 0;
+    }
+
+    /////////////////
+    // Accesors
+    ////////////////
+
+    public int size() {
+        return this.count;
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    /**
+     * Gets the array index of a record by its age, 0 being the newest.
+     *
+     */
+    private int index(int age) {
+        return (this.head - 1 - age) & this.mask;
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.common;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import flaggishared.network.BulletSpawn;
+import flaggishared.network.Snapshot;
+
+/**
+ * Bounded queue of projectile spawn and despawn events, numbered by increasing
+ * sequence numbers. Every client has one, holding the events it didn't
+ * acknowledge yet, and every room has one collecting the changes of its
+ * projectiles since the last snapshot. Unacknowledged events are resent in
+ * every snapshot, so the cost of a snapshot depends on what changed, not on
+ * how many projectiles are live.
+ * <p>
+ * A queue that overflows, or gets reset when its client changes rooms, needs a
+ * resync: its events are dropped and replaced by the spawns of all live
+ * projectiles. Sequence numbers keep increasing across resyncs, so late
+ * acknowledgements never drop newer events. The sequence number the last resync
+ * started at is sent in every snapshot, so the client knows when to drop the
+ * projectiles it has. Only {@link #requestResync()} may be called concurrently
+ * with the game loop.
+ *
+ */
+public class ProjectileEventQueue {
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final BulletSpawn[] events;
+    private final boolean[] despawn;
+    private final long[] stampTime;
+    private final int mask;
+    private final AtomicBoolean resyncRequested = new AtomicBoolean();
+    private int firstSequence, endSequence, resyncSequence;
+    private boolean overflowed;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor.
+     *
+     * @param capacity - maximum number of queued events, must be a power of two.
+     */
+    public ProjectileEventQueue(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.events = new BulletSpawn[capacity];
+        this.despawn = new boolean[capacity];
+        this.stampTime = new long[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            this.events[i] = new BulletSpawn();
+        }
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Appends a spawn event, and returns its reusable data to be filled in. The
+     * age of the spawn is kept up to date when the event is resent.
+     *
+     * @param now - current time in ms, the time the age is measured at.
+     * @return - spawn data of the event.
+     */
+    public BulletSpawn pushSpawn(long now) {
+        int slot = push(false);
+        this.stampTime[slot] = now;
+        return this.events[slot];
+    }
+
+    /**
+     * Appends a despawn event.
+     *
+     * @param ownerId   - ID of the player who shot the projectile.
+     * @param bulletNum - bullet number.
+     */
+    public void pushDespawn(int ownerId, int bulletNum) {
+        BulletSpawn event = this.events[push(true)];
+        event.ownerId = ownerId;
+        event.bulletNum = bulletNum;
+    }
+
+    /**
+     * Appends all events of another queue, keeping their order. The other queue
+     * is left unchanged. If the other queue overflowed, this one overflows too.
+     *
+     * @param other - source queue.
+     */
+    public void append(ProjectileEventQueue other) {
+        if (other.overflowed) {
+            this.overflowed = true;
+            return;
+        }
+        for (int sequence = other.firstSequence; sequence != other.endSequence; sequence++) {
+            int source = sequence & other.mask;
+            int slot = push(other.despawn[source]);
+            this.events[slot].copyFrom(other.events[source]);
+            this.stampTime[slot] = other.stampTime[source];
+        }
+    }
+
+    /**
+     * Drops the events acknowledged by the client. Acknowledgements outside of
+     * the queued range are ignored.
+     *
+     * @param sequence - sequence number of the first event the client didn't
+     *                 receive yet.
+     */
+    public void acknowledge(int sequence) {
+        if (sequence - this.firstSequence > 0 && this.endSequence - sequence >= 0) {
+            this.firstSequence = sequence;
+        }
+    }
+
+    /**
+     * Writes all queued events into a snapshot, with the sequence number of the
+     * first one, and the sequence number the last resync started at.
+     *
+     * @param snapshot - target snapshot.
+     * @param now      - current time in ms.
+     */
+    public void write(Snapshot snapshot, long now) {
+        snapshot.setResyncSequence(this.resyncSequence);
+        snapshot.setFirstEventSequence(this.firstSequence);
+        for (int sequence = this.firstSequence; sequence != this.endSequence; sequence++) {
+            int slot = sequence & this.mask;
+            BulletSpawn event = this.events[slot];
+            if (this.despawn[slot]) {
+                snapshot.addDespawnEvent(event.ownerId, event.bulletNum);
+            } else {
+                BulletSpawn spawn = snapshot.addSpawnEvent();
+                spawn.copyFrom(event);
+                spawn.age += (int) (now - this.stampTime[slot]);
+            }
+        }
+    }
+
+    /**
+     * Drops all events. The sequence numbers continue where they ended.
+     *
+     */
+    public void clear() {
+        this.firstSequence = this.endSequence;
+        this.overflowed = false;
+    }
+
+    /**
+     * Drops all events, and starts a resync at the next sequence number. The
+     * spawns of all live projectiles have to be pushed after this.
+     *
+     */
+    public void resync() {
+        clear();
+        this.resyncSequence = this.endSequence;
+    }
+
+    /**
+     * Marks the queue for a resync, done by the game loop before the next
+     * snapshot. Can be called from any thread.
+     *
+     */
+    public void requestResync() {
+        this.resyncRequested.set(true);
+    }
+
+    /**
+     * Checks if the queue lost events, or was reset, and has to be resynced. A
+     * requested resync is taken by this call, so a request made after it is kept
+     * for the next one.
+     *
+     * @return - true if a resync is needed.
+     */
+    public boolean takeResync() {
+        return this.resyncRequested.getAndSet(false) | this.overflowed;
+    }
+
+    /////////////////
+    // Accesors
+    ////////////////
+
+    public int size() {
+        return this.endSequence - this.firstSequence;
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    private int push(boolean isDespawn) {
+        if (size() == this.events.length) {
+            this.overflowed = true;
+            this.firstSequence++; // Oldest event is lost, the queue has to be resynced
+        }
+        int slot = this.endSequence++ & this.mask;
+        this.despawn[slot] = isDespawn;
+        return slot;
+    }
+
+}
@@ -0,0 +1,284 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.common;
+
+import java.util.Arrays;
+
+import flaggishared.network.BulletSpawn;
+
+/**
+ * Store of the live projectiles of a room, as a structure of arrays. The
+ * projectiles are packed at the start of the arrays, so they can be iterated by
+ * index. Removing one moves the last projectile into its slot, so adding and
+ * removing are both O(1), and the arrays are kept for the next projectiles, so
+ * the store doesn't allocate once it's large enough.
+ * <p>
+ * Projectiles are moved and expired by {@link #advance(long)}, called by the
+ * game loop. Positions are calculated from the age of the projectile, the same
+ * way the clients do it, so they don't drift. The position before the last
+ * advance is kept too, so collisions can be tested along the whole path
+ * travelled during a tick. Each projectile also keeps how far back in time the
+ * players it's tested against are rewound, the latency of its shooter when it
+ * was fired. Every added and removed projectile is recorded as
+ * a spawn or despawn event, collected until the next snapshot takes them.
+ * Not thread-safe.
+ *
+ */
+public class ProjectileStore {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int CHANGE_LOG_CAPACITY = 256; // Must be a power of two
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final ProjectileEventQueue changes = new ProjectileEventQueue(CHANGE_LOG_CAPACITY);
+    private int count;
+    private int[] ownerId, bulletNum, initialX, initialY, targetX, targetY, velocity, decayTime, x, y, previousX, previousY, rewindTime;
+    private long[] creationTime;
+    private double[] directionX, directionY;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor.
+     *
+     */
+    public ProjectileStore() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Adds a new projectile, created at the given time, hitting players at their
+     * current positions.
+     *
+     * @param spawn   - recipe for the projectile.
+     * @param ownerId - ID of the player who shot the projectile.
+     * @param now     - current time in ms.
+     */
+    public void add(BulletSpawn spawn, int ownerId, long now) {
+        add(spawn, ownerId, now, 0);
+    }
+
+    /**
+     * Adds a new projectile, created at the given time.
+     *
+     * @param spawn      - recipe for the projectile.
+     * @param ownerId    - ID of the player who shot the projectile.
+     * @param now        - current time in ms.
+     * @param rewindTime - time in ms the players are rewound by when testing
+     *                   hits, the latency of the shooter.
+     */
+    public void add(BulletSpawn spawn, int ownerId, long now, int rewindTime) {
+        if (this.count == this.x.length) {
+            allocate(this.x.length * 2);
+        }
+        int i = this.count++;
+        this.ownerId[i] = ownerId;
+        this.bulletNum[i] = spawn.bulletNum;
+        this.initialX[i] = spawn.initialX;
+        this.initialY[i] = spawn.initialY;
+        this.targetX[i] = spawn.targetX;
+        this.targetY[i] = spawn.targetY;
+        this.velocity[i] = spawn.velocity;
+        this.decayTime[i] = spawn.decayTime;
+        this.creationTime[i] = now;
+        this.rewindTime[i] = rewindTime;
+        this.x[i] = spawn.initialX;
+        this.y[i] = spawn.initialY;
+        this.previousX[i] = spawn.initialX;
+        this.previousY[i] = spawn.initialY;
+
+        double dx = spawn.targetX - spawn.initialX;
+        double dy = spawn.targetY - spawn.initialY;
+        double magnitude = Math.sqrt(dx * dx + dy * dy);
+        this.directionX[i] = magnitude == 0 ? 0 : dx / magnitude;
+        this.directionY[i] = magnitude == 0 ? 0 : dy / magnitude;
+        writeSpawnData(i, this.changes.pushSpawn(now), now);
+    }
+
+    /**
+     * Moves all projectiles to their position at the given time, and removes the
+     * ones that decayed.
+     *
+     * @param now - current time in ms.
+     */
+    public void advance(long now) {
+        for (int i = this.count - 1; i >= 0; i--) {
+            long age = Math.max(0, now - this.creationTime[i]); // Can be shot after the scheduled time of the tick
+            if (age >= this.decayTime[i]) {
+                remove(i);
+                continue;
+            }
+            double distance = age / 1000.0 * this.velocity[i];
+            this.previousX[i] = this.x[i];
+            this.previousY[i] = this.y[i];
+            this.x[i] = this.initialX[i] + (int) (this.directionX[i] * distance);
+            this.y[i] = this.initialY[i] + (int) (this.directionY[i] * distance);
+        }
+    }
+
+    /**
+     * Removes a projectile. The last projectile is moved into its index, so when
+     * removing while iterating, iterate from the end.
+     *
+     * @param index - index of the projectile.
+     */
+    public void remove(int index) {
+        this.changes.pushDespawn(this.ownerId[index], this.bulletNum[index]);
+        int last = --this.count;
+        if (index == last) {
+            return;
+        }
+        this.ownerId[index] = this.ownerId[last];
+        this.bulletNum[index] = this.bulletNum[last];
+        this.initialX[index] = this.initialX[last];
+        this.initialY[index] = this.initialY[last];
+        this.targetX[index] = this.targetX[last];
+        this.targetY[index] = this.targetY[last];
+        this.velocity[index] = this.velocity[last];
+        this.decayTime[index] = this.decayTime[last];
+        this.creationTime[index] = this.creationTime[last];
+        this.rewindTime[index] = this.rewindTime[last];
+        this.x[index] = this.x[last];
+        this.y[index] = this.y[last];
+        this.previousX[index] = this.previousX[last];
+        this.previousY[index] = this.previousY[last];
+        this.directionX[index] = this.directionX[last];
+        this.directionY[index] = this.directionY[last];
+    }
+
+    /**
+     * Removes all projectiles shot by a player.
+     *
+     * @param ownerId - ID of the player.
+     */
+    public void removeOwnedBy(int ownerId) {
+        for (int i = this.count - 1; i >= 0; i--) {
+            if (this.ownerId[i] == ownerId) {
+                remove(i);
+            }
+        }
+    }
+
+    /**
+     * Writes the creation data of a projectile to be sent to clients, including
+     * its current age.
+     *
+     * @param index - index of the projectile.
+     * @param spawn - target spawn data.
+     * @param now   - current time in ms.
+     */
+    public void writeSpawnData(int index, BulletSpawn spawn, long now) {
+        spawn.set(this.ownerId[index], this.bulletNum[index], this.initialX[index], this.initialY[index], this.targetX[index], this.targetY[index], this.decayTime[index], this.velocity[index], (int) (now - this.creationTime[index]));
+    }
+
+    /////////////////
+    // Accesors
+    ////////////////
+
+    /**
+     * Returns the spawn and despawn events recorded since the changes were last
+     * cleared.
+     *
+     * @return - change log of the store.
+     */
+    public ProjectileEventQueue getChanges() {
+        return this.changes;
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    public boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    public int getOwnerId(int index) {
+        return this.ownerId[index];
+    }
+
+    public int getX(int index) {
+        return this.x[index];
+    }
+
+    public int getY(int index) {
+        return this.y[index];
+    }
+
+    public int getPreviousX(int index) {
+        return this.previousX[index];
+    }
+
+    public int getPreviousY(int index) {
+        return this.previousY[index];
+    }
+
+    public int getRewindTime(int index) {
+        return this.rewindTime[index];
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    private void allocate(int capacity) {
+        this.ownerId = copyOf(this.ownerId, capacity);
+        this.bulletNum = copyOf(this.bulletNum, capacity);
+        this.initialX = copyOf(this.initialX, capacity);
+        this.initialY = copyOf(this.initialY, capacity);
+        this.targetX = copyOf(this.targetX, capacity);
+        this.targetY = copyOf(this.targetY, capacity);
+        this.velocity = copyOf(this.velocity, capacity);
+        this.decayTime = copyOf(this.decayTime, capacity);
+        this.x = copyOf(this.x, capacity);
+        this.y = copyOf(this.y, capacity);
+        this.previousX = copyOf(this.previousX, capacity);
+        this.previousY = copyOf(this.previousY, capacity);
+        this.rewindTime = copyOf(this.rewindTime, capacity);
+        this.creationTime = this.creationTime == null ? new long[capacity] : Arrays.copyOf(this.creationTime, capacity);
+        this.directionX = this.directionX == null ? new double[capacity] : Arrays.copyOf(this.directionX, capacity);
+        this.directionY = this.directionY == null ? new double[capacity] : Arrays.copyOf(this.directionY, capacity);
+    }
+
+    private static int[] copyOf(int[] array, int capacity) {
+        return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+}
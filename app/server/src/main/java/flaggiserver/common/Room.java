@@ -0,0 +1,402 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.common;
+
+import java.util.Arrays;
+
+import flaggishared.common.ColliderIndex;
+import flaggishared.common.MapData;
+import flaggishared.network.BulletSpawn;
+
+/**
+ * A single match. The room owns its map, its players and the projectiles
+ * they shot, so it can be simulated independently of the other rooms. The ID
+ * of the room is the ID of the client hosting it.
+ * <p>
+ * Members change rarely, so every change publishes a new member array, which
+ * the simulation iterates without locking. Projectiles are added by the network
+ * threads and simulated by the game loop, so their store is accessed only while
+ * holding its lock. The room also keeps the accounting of its tick durations
+ * against the tick budget it gets from the game loop, and of how late its ticks
+ * started after their scheduled time, with histograms of both since the last
+ * report.
+ * <p>
+ * The host plays for the blue team, the invited player for the red one. Each
+ * flag area is a trigger zone, and the room tracks who carries which team's
+ * flag, and the captures of both teams.
+ *
+ */
+public class Room {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    public static final int TEAM_BLUE = 0;
+    public static final int TEAM_RED = 1;
+    public static final int NO_CARRIER = -1;
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final int id;
+    private final MapData map;
+    private final ColliderIndex obstacles;
+    private final String mapHash;
+    private final ProjectileStore projectiles;
+    private final HitDetector hitDetector;
+    private final TriggerZones flagZones;
+    private final int[] flagZoneTeams, flagCarriers, captures;
+    private volatile ClientStruct[] members;
+    private final TickHistogram tickDurations, tickLateness, overrunLengths;
+    private long ticks, overruns, lateTicks, maxTickNanos, reportedOverruns, reportedLateTicks;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor.
+     *
+     * @param id        - room ID, the ID of the hosting client.
+     * @param map       - map the match is played on, in scaled coordinates.
+     * @param obstacles - static obstacles of the map.
+     * @param mapHash   - content hash of the map, sent to the members.
+     */
+    public Room(int id, MapData map, ColliderIndex obstacles, String mapHash) {
+        this.id = id;
+        this.map = map;
+        this.obstacles = obstacles;
+        this.mapHash = mapHash;
+        this.tickDurations = new TickHistogram();
+        this.tickLateness = new TickHistogram();
+        this.overrunLengths = new TickHistogram();
+        this.projectiles = new ProjectileStore();
+        this.hitDetector = new HitDetector();
+        this.flagZones = new TriggerZones();
+        this.flagZoneTeams = new int[TriggerZones.MAX_ZONES];
+        this.flagCarriers = new int[] { NO_CARRIER, NO_CARRIER };
+        this.captures = new int[2];
+        this.members = new ClientStruct[0];
+    }
+
+    /////////////////
+    // Accesors & modifiers
+    ////////////////
+
+    public int getID() {
+        return this.id;
+    }
+
+    public MapData getMap() {
+        return this.map;
+    }
+
+    public ColliderIndex getObstacles() {
+        return this.obstacles;
+    }
+
+    public String getMapHash() {
+        return this.mapHash;
+    }
+
+    /**
+     * Gets the current members of the room. The array is shared and must not be
+     * modified.
+     *
+     * @return - array of the members.
+     */
+    public ClientStruct[] getMembers() {
+        return this.members;
+    }
+
+    /**
+     * Adds a client into the room, and assigns it the room ID.
+     *
+     * @param client - new member.
+     */
+    public synchronized void addMember(ClientStruct client) {
+        ClientStruct[] current = this.members;
+        ClientStruct[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = client;
+        this.members = updated;
+        client.setRoomID(this.id);
+    }
+
+    /**
+     * Removes a client from the room, together with the projectiles it shot.
+     *
+     * @param client - member to remove.
+     * @return - number of members left in the room.
+     */
+    public synchronized int removeMember(ClientStruct client) {
+        ClientStruct[] current = this.members;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == client) {
+                ClientStruct[] updated = new ClientStruct[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                this.members = updated;
+                break;
+            }
+        }
+        synchronized (this.projectiles) {
+            this.projectiles.removeOwnedBy(client.getID());
+        }
+        dropFlag(client);
+        return this.members.length;
+    }
+
+    /**
+     * Gets the live projectiles of the room. Must only be accessed while
+     * synchronized on the returned store.
+     *
+     * @return - projectile store of the room.
+     */
+    public ProjectileStore getProjectiles() {
+        return this.projectiles;
+    }
+
+    /**
+     * Gets the hit detector of the room. Only used by the room simulation.
+     *
+     * @return - the hit detector.
+     */
+    public HitDetector getHitDetector() {
+        return this.hitDetector;
+    }
+
+    /**
+     * Adds a new projectile shot by a member of the room.
+     *
+     * @param spawn      - recipe for the projectile.
+     * @param ownerId    - ID of the shooting member.
+     * @param rewindTime - latency of the shooter in ms, the players are rewound
+     *                   by when testing hits.
+     */
+    public void addProjectile(BulletSpawn spawn, int ownerId, int rewindTime) {
+        synchronized (this.projectiles) {
+            this.projectiles.add(spawn, ownerId, System.currentTimeMillis(), rewindTime);
+        }
+    }
+
+    /////////////////
+    // Flags
+    ////////////////
+
+    /**
+     * Registers the area of a flag as a trigger zone.
+     *
+     * @param team   - team owning the flag.
+     * @param x      - X position of the flag.
+     * @param y      - Y position of the flag.
+     * @param width  - width of the flag area.
+     * @param height - height of the flag area.
+     */
+    public void addFlagZone(int team, int x, int y, int width, int height) {
+        this.flagZoneTeams[this.flagZones.addZone(x, y, width, height)] = team;
+    }
+
+    /**
+     * Gets the flag trigger zones. Only used by the room simulation.
+     *
+     * @return - the flag zones.
+     */
+    public TriggerZones getFlagZones() {
+        return this.flagZones;
+    }
+
+    /**
+     * Gets the team owning the flag of a zone.
+     *
+     * @param zone - zone index.
+     * @return - team of the flag.
+     */
+    public int getFlagZoneTeam(int zone) {
+        return this.flagZoneTeams[zone];
+    }
+
+    /**
+     * Gets the team of a member. The host is blue.
+     *
+     * @param client - target member.
+     * @return - team of the member.
+     */
+    public int getTeam(ClientStruct client) {
+        return client.getID() == this.id ? TEAM_BLUE : TEAM_RED;
+    }
+
+    /**
+     * Gets the client carrying the flag of a team.
+     *
+     * @param team - team owning the flag.
+     * @return - ID of the carrier, or {@link #NO_CARRIER} if the flag is at its
+     *         base.
+     */
+    public synchronized int getFlagCarrier(int team) {
+        return this.flagCarriers[team];
+    }
+
+    /**
+     * Gives the flag of a team to a player, if the flag is at its base.
+     *
+     * @param team   - team owning the flag.
+     * @param client - player picking the flag up.
+     * @return - true if the player got the flag.
+     */
+    public synchronized boolean pickUpFlag(int team, ClientStruct client) {
+        if (this.flagCarriers[team] != NO_CARRIER) {
+            return false;
+        }
+        this.flagCarriers[team] = client.getID();
+        return true;
+    }
+
+    /**
+     * Scores a capture, if the player carries the enemy flag and its own team's
+     * flag is at its base. The captured flag returns to its base.
+     *
+     * @param client - player at its own flag.
+     * @return - true if the player scored.
+     */
+    public synchronized boolean captureFlag(ClientStruct client) {
+        int team = getTeam(client);
+        int enemy = 1 - team;
+        if (this.flagCarriers[enemy] != client.getID() || this.flagCarriers[team] != NO_CARRIER) {
+            return false;
+        }
+        this.flagCarriers[enemy] = NO_CARRIER;
+        this.captures[team]++;
+        return true;
+    }
+
+    /**
+     * Returns the flag carried by a player to its base.
+     *
+     * @param client - target player.
+     * @return - true if the player carried a flag.
+     */
+    public synchronized boolean dropFlag(ClientStruct client) {
+        boolean dropped = false;
+        for (int team = 0; team < this.flagCarriers.length; team++) {
+            if (this.flagCarriers[team] == client.getID()) {
+                this.flagCarriers[team] = NO_CARRIER;
+                dropped = true;
+            }
+        }
+        return dropped;
+    }
+
+    public synchronized int getCaptures(int team) {
+        return this.captures[team];
+    }
+
+    /////////////////
+    // Tick accounting
+    ////////////////
+
+    /**
+     * Records the timing of a single simulation tick of the room.
+     *
+     * @param durationNanos - time the tick took.
+     * @param latenessNanos - time the tick started after its scheduled time.
+     * @param budgetNanos   - time the tick was allowed to take.
+     * @param lateNanos     - lateness above which the tick counts as late.
+     * @return - true if the tick overran its budget.
+     */
+    public synchronized boolean recordTick(long durationNanos, long latenessNanos, long budgetNanos, long lateNanos) {
+        this.ticks++;
+        this.maxTickNanos = Math.max(this.maxTickNanos, durationNanos);
+        this.tickDurations.record(durationNanos);
+        this.tickLateness.record(latenessNanos);
+        if (latenessNanos > lateNanos) {
+            this.lateTicks++;
+        }
+        if (durationNanos > budgetNanos) {
+            this.overruns++;
+            this.overrunLengths.record(durationNanos - budgetNanos);
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized long getTickCount() {
+        return this.ticks;
+    }
+
+    public synchronized long getOverrunCount() {
+        return this.overruns;
+    }
+
+    public synchronized long getLateTickCount() {
+        return this.lateTicks;
+    }
+
+    public synchronized long getMaxTickNanos() {
+        return this.maxTickNanos;
+    }
+
+    /**
+     * Gets the number of overruns since the last call, so they can be reported
+     * periodically instead of on every tick.
+     *
+     * @return - number of new overruns.
+     */
+    public synchronized long takeNewOverruns() {
+        long count = this.overruns - this.reportedOverruns;
+        this.reportedOverruns = this.overruns;
+        return count;
+    }
+
+    /**
+     * Gets the number of late ticks since the last call.
+     *
+     * @return - number of new late ticks.
+     */
+    public synchronized long takeNewLateTicks() {
+        long count = this.lateTicks - this.reportedLateTicks;
+        this.reportedLateTicks = this.lateTicks;
+        return count;
+    }
+
+    /**
+     * Describes the tick timings since the last call, and starts new histograms.
+     *
+     * @return - tick duration, lateness and overrun length percentiles.
+     */
+    public synchronized String takeTickReport() {
+        String report = "Tick duration p50 " + this.tickDurations.getPercentile(50) / 1000 + " us, p99 " + this.tickDurations.getPercentile(99) / 1000 + " us, max " + this.tickDurations.getMaxNanos() / 1000 + " us. "
+                + "Start lateness p50 " + this.tickLateness.getPercentile(50) / 1000 + " us, p99 " + this.tickLateness.getPercentile(99) / 1000 + " us, max " + this.tickLateness.getMaxNanos() / 1000 + " us. "
+                + "Overrun p99 " + this.overrunLengths.getPercentile(99) / 1000 + " us over " + this.overrunLengths.getCount() + " ticks.";
+        this.tickDurations.reset();
+        this.tickLateness.reset();
+        this.overrunLengths.reset();
+        return report;
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.common;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid of points, used to find the entities near a position without
+ * checking all of them. Entities are stored as int handles (usually indices
+ * into another structure). The grid is rebuilt from scratch every time it is
+ * used, and doesn't allocate once its arrays are large enough.
+ *
+ */
+public class SpatialGrid {
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final int cellSize;
+    private int columns, rows, itemCount, resultCount;
+    private int[] cellHeads, items, itemX, itemY, next, results;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor.
+     *
+     * @param cellSize - width and height of a cell, should be in the order of
+     *                 the usual query size.
+     */
+    public SpatialGrid(int cellSize) {
+        this.cellSize = cellSize;
+        this.cellHeads = new int[0];
+        this.items = new int[16];
+        this.itemX = new int[16];
+        this.itemY = new int[16];
+        this.next = new int[16];
+        this.results = new int[16];
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Removes all entities, and resizes the grid to cover an area. Entities
+     * outside of the area are stored in the border cells.
+     *
+     * @param width  - width of the covered area.
+     * @param height - height of the covered area.
+     */
+    public void reset(int width, int height) {
+        this.columns = Math.max(1, (width + this.cellSize - 1) / this.cellSize);
+        this.rows = Math.max(1, (height + this.cellSize - 1) / this.cellSize);
+        if (this.cellHeads.length < this.columns * this.rows) {
+            this.cellHeads = new int[this.columns * this.rows];
+        }
+        Arrays.fill(this.cellHeads, 0, this.columns * this.rows, -1);
+        this.itemCount = 0;
+        this.resultCount = 0;
+    }
+
+    /**
+     * Inserts an entity.
+     *
+     * @param item - entity handle.
+     * @param x    - X position of the entity.
+     * @param y    - Y position of the entity.
+     */
+    public void insert(int item, int x, int y) {
+        if (this.itemCount == this.items.length) {
+            int capacity = this.items.length * 2;
+            this.items = Arrays.copyOf(this.items, capacity);
+            this.itemX = Arrays.copyOf(this.itemX, capacity);
+            this.itemY = Arrays.copyOf(this.itemY, capacity);
+            this.next = Arrays.copyOf(this.next, capacity);
+        }
+        int cell = getRow(y) * this.columns + getColumn(x);
+        this.items[this.itemCount] = item;
+        this.itemX[this.itemCount] = x;
+        this.itemY[this.itemCount] = y;
+        this.next[this.itemCount] = this.cellHeads[cell];
+        this.cellHeads[cell] = this.itemCount++;
+    }
+
+    /**
+     * Finds all entities inside a rectangle, borders included. The results are
+     * accessible through {@link #getResult(int)} until the next query, in no
+     * particular order.
+     *
+     * @param minX - left border.
+     * @param minY - top border.
+     * @param maxX - right border.
+     * @param maxY - bottom border.
+     * @return - number of found entities.
+     */
+    public int query(int minX, int minY, int maxX, int maxY) {
+        this.resultCount = 0;
+        int lastColumn = getColumn(maxX);
+        int lastRow = getRow(maxY);
+        for (int row = getRow(minY); row <= lastRow; row++) {
+            for (int column = getColumn(minX); column <= lastColumn; column++) {
+                for (int i = this.cellHeads[row * this.columns + column]; i != -1; i = this.next[i]) {
+                    int x = this.itemX[i];
+                    int y = this.itemY[i];
+                    if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                        addResult(this.items[i]);
+                    }
+                }
+            }
+        }
+        return this.resultCount;
+    }
+
+    /**
+     * Returns an entity found by the last query.
+     *
+     * @param index - result index.
+     * @return - entity handle.
+     */
+    public int getResult(int index) {
+        return this.results[index];
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    private void addResult(int item) {
+        if (this.resultCount == this.results.length) {
+            this.results = Arrays.copyOf(this.results, this.results.length * 2);
+        }
+        this.results[this.resultCount++] = item;
+    }
+
+    private int getColumn(int x) {
+        return Math.max(0, Math.min(this.columns - 1, x / this.cellSize));
+    }
+
+    private int getRow(int y) {
+        return Math.max(0, Math.min(this.rows - 1, y / this.cellSize));
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.common;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of tick timings, with a bucket per power of two microseconds. The
+ * buckets are coarse, but recording is a few primitive operations and never
+ * allocates, so it can run on every tick of every room. Not thread-safe, the
+ * owner synchronizes.
+ *
+ */
+public class TickHistogram {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    private static final int BUCKET_COUNT = 24; // The last bucket holds everything above 8 seconds
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private long count, maxNanos;
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Records a single value.
+     *
+     * @param nanos - recorded time in ns, negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        this.buckets[getBucket(nanos)]++;
+        this.count++;
+        this.maxNanos = Math.max(this.maxNanos, nanos);
+    }
+
+    /**
+     * Gets an upper bound of a percentile of the recorded values. It's the upper
+     * edge of the bucket the percentile falls into, but never above the largest
+     * recorded value.
+     *
+     * @param percentile - percentile, between 0 and 100.
+     * @return - percentile in ns, 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long rank = (long) Math.ceil(this.count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += this.buckets[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(this.maxNanos, (1000L << i) - 1);
+            }
+        }
+        return this.maxNanos;
+    }
+
+    /**
+     * Forgets all recorded values.
+     *
+     */
+    public void reset() {
+        Arrays.fill(this.buckets, 0);
+        this.count = 0;
+        this.maxNanos = 0;
+    }
+
+    /////////////////
+    // Accesors
+    ////////////////
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public long getMaxNanos() {
+        return this.maxNanos;
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    /**
+     * Gets the bucket of a value. Bucket 0 holds everything below 1 us, bucket i
+     * everything below 2^i us.
+     *
+     */
+    private static int getBucket(long nanos) {
+        long micros = nanos / 1000;
+        return Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.common;
+
+import java.util.Arrays;
+
+import flaggishared.common.PlayerMovement;
+
+/**
+ * Set of rectangular trigger zones of a room, like the flag areas. Every player
+ * remembers which zones it is inside of, so an update only reports the players
+ * that entered or left a zone since the previous update, instead of every
+ * player standing in one. The events are accessible through the getters until
+ * the next update, and nothing is allocated once the arrays are large enough.
+ *
+ */
+public class TriggerZones {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    public static final int MAX_ZONES = Long.SIZE; // Inside state of a player is a bit mask
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final int[] minX, minY, maxX, maxY;
+    private int count, eventCount;
+    private ClientStruct[] eventPlayers;
+    private int[] eventZones;
+    private boolean[] eventEntered;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor.
+     *
+     */
+    public TriggerZones() {
+        this.minX = new int[MAX_ZONES];
+        this.minY = new int[MAX_ZONES];
+        this.maxX = new int[MAX_ZONES];
+        this.maxY = new int[MAX_ZONES];
+        this.eventPlayers = new ClientStruct[8];
+        this.eventZones = new int[8];
+        this.eventEntered = new boolean[8];
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Registers a new zone.
+     *
+     * @param x      - X position of the zone.
+     * @param y      - Y position of the zone.
+     * @param width  - width of the zone.
+     * @param height - height of the zone.
+     * @return - index of the zone.
+     * @throws IllegalStateException if there are too many zones already.
+     */
+    public int addZone(int x, int y, int width, int height) {
+        if (this.count == MAX_ZONES) {
+            throw new IllegalStateException("Too many trigger zones, the limit is " + MAX_ZONES);
+        }
+        this.minX[this.count] = x;
+        this.minY[this.count] = y;
+        this.maxX[this.count] = x + width;
+        this.maxY[this.count] = y + height;
+        return this.count++;
+    }
+
+    /**
+     * Checks which zones the player hitboxes overlap, and collects the enter and
+     * exit events since the last update.
+     *
+     * @param players - players of the room.
+     * @return - number of events.
+     */
+    public int update(ClientStruct[] players) {
+        Arrays.fill(this.eventPlayers, 0, this.eventCount, null); // Don't keep removed clients alive
+        this.eventCount = 0;
+        for (ClientStruct player : players) {
+            int x = player.getX() + PlayerMovement.HITBOX_OFFSET_X;
+            int y = player.getY() + PlayerMovement.HITBOX_OFFSET_Y;
+            long inside = 0;
+            for (int zone = 0; zone < this.count; zone++) {
+                if (this.minX[zone] < x + PlayerMovement.HITBOX_WIDTH && this.maxX[zone] > x && this.minY[zone] < y + PlayerMovement.HITBOX_HEIGHT && this.maxY[zone] > y) {
+                    inside |= 1L << zone;
+                }
+            }
+
+            long changed = inside ^ player.getTriggerZones();
+            if (changed == 0) {
+                continue;
+            }
+            player.setTriggerZones(inside);
+            for (; changed != 0; changed &= changed - 1) {
+                int zone = Long.numberOfTrailingZeros(changed);
+                addEvent(player, zone, (inside & (1L << zone)) != 0);
+            }
+        }
+        return this.eventCount;
+    }
+
+    /////////////////
+    // Accesors
+    ////////////////
+
+    public int size() {
+        return this.count;
+    }
+
+    public ClientStruct getEventPlayer(int index) {
+        return this.eventPlayers[index];
+    }
+
+    public int getEventZone(int index) {
+        return this.eventZones[index];
+    }
+
+    /**
+     * Tells if an event is a player entering a zone, or leaving it.
+     *
+     * @param index - event index.
+     * @return - true if the player entered the zone.
+     */
+    public boolean isEnterEvent(int index) {
+        return this.eventEntered[index];
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    private void addEvent(ClientStruct player, int zone, boolean entered) {
+        if (this.eventCount == this.eventZones.length) {
+            int capacity = this.eventCount * 2;
+            this.eventPlayers = Arrays.copyOf(this.eventPlayers, capacity);
+            this.eventZones = Arrays.copyOf(this.eventZones, capacity);
+            this.eventEntered = Arrays.copyOf(this.eventEntered, capacity);
+        }
+        this.eventPlayers[this.eventCount] = player;
+        this.eventZones[this.eventCount] = zone;
+        this.eventEntered[this.eventCount++] = entered;
+    }
+
+}
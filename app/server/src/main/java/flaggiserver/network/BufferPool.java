@@ -0,0 +1,103 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.network;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Pool of reusable direct byte buffers of a fixed size. Direct buffers are
+ * passed to the socket channels without the copy a heap buffer needs, and the
+ * pool keeps them from being allocated per packet. Safe to use from multiple
+ * threads.
+ *
+ */
+public class BufferPool {
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final ArrayBlockingQueue<ByteBuffer> free;
+    private final int bufferSize;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Creates the pool, and allocates all of its buffers.
+     *
+     * @param bufferSize - size of a single buffer.
+     * @param capacity   - number of buffers.
+     */
+    public BufferPool(int bufferSize, int capacity) {
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<ByteBuffer>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            this.free.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Takes a cleared buffer from the pool. If the pool is empty, a new buffer is
+     * allocated.
+     *
+     * @return - cleared buffer.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = this.free.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(this.bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers over the pool capacity are left to
+     * the garbage collector.
+     *
+     * @param buffer - buffer taken by {@link #acquire()}.
+     */
+    public void release(ByteBuffer buffer) {
+        this.free.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    public int getAvailable() {
+        return this.free.size();
+    }
+
+}
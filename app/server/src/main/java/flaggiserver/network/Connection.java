@@ -0,0 +1,291 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.network;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import flaggishared.network.TcpCodec;
+
+/**
+ * A single non-blocking TCP connection managed by the {@code NetworkReactor}.
+ * Inbound bytes are buffered until a full frame is available, outbound frames
+ * are queued and written by the reactor thread once the socket is writable.
+ * Frames are encoded by {@code TcpCodec}.
+ * <p>
+ * Queued frames are written together with a single gathering write. The
+ * outbound queue is bounded, a client that doesn't read fast enough to keep
+ * it under {@link #MAX_QUEUED_BYTES} is evicted, so it never holds back the
+ * threads sending messages.
+ *
+ * @see NetworkReactor
+ */
+public class Connection {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    private static final int READ_BUFFER_SIZE = Integer.BYTES + TcpCodec.MAX_REQUEST_SIZE; // Largest request + length prefix
+    public static final int MAX_QUEUED_BYTES = 2 * TcpCodec.MAX_FRAME_SIZE;
+    private static final int MAX_GATHERED_FRAMES = 64;
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final NetworkReactor reactor;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ByteBuffer readBuffer, frame;
+    private final Queue<ByteBuffer> outbound;
+    private final AtomicInteger queuedBytes;
+    private final AtomicBoolean writeRequested;
+    private final ByteBuffer[] gathered;
+    private final long openedTime;
+    private volatile boolean closeAfterWrite, closed, evicted;
+    private int gatheredCount;
+    private Object attachment;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor.
+     *
+     * @param reactor - owning reactor.
+     * @param channel - connected socket channel.
+     * @param key     - selection key of the channel.
+     */
+    Connection(NetworkReactor reactor, SocketChannel channel, SelectionKey key) {
+        this.reactor = reactor;
+        this.channel = channel;
+        this.key = key;
+        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        this.frame = this.readBuffer.duplicate();
+        this.outbound = new ConcurrentLinkedQueue<ByteBuffer>();
+        this.queuedBytes = new AtomicInteger();
+        this.writeRequested = new AtomicBoolean();
+        this.gathered = new ByteBuffer[MAX_GATHERED_FRAMES];
+        this.openedTime = System.currentTimeMillis();
+    }
+
+    /////////////////
+    // Writing
+    ////////////////
+
+    /**
+     * Queues an encoded frame, or any raw bytes. Safe to call from any thread,
+     * never blocks. If the queue would exceed {@link #MAX_QUEUED_BYTES}, nothing is
+     * queued, and the connection gets closed by the reactor.
+     *
+     * @param buffer - bytes to send, from position to limit. Must not be modified
+     *               after the call.
+     */
+    public void write(ByteBuffer buffer) {
+        if (this.closed || this.evicted) {
+            return;
+        }
+        if (this.queuedBytes.addAndGet(buffer.remaining()) > MAX_QUEUED_BYTES) {
+            this.evicted = true;
+            this.reactor.requestWrite(this);
+            return;
+        }
+        this.outbound.add(buffer);
+        if (this.writeRequested.compareAndSet(false, true)) {
+            this.reactor.requestWrite(this); // Further frames are picked up by the same write
+        }
+    }
+
+    /**
+     * Closes the connection once all queued data has been written.
+     *
+     */
+    public void closeAfterWrite() {
+        this.closeAfterWrite = true;
+        this.reactor.requestWrite(this);
+    }
+
+    /**
+     * Closes the connection immediately. Queued data is discarded.
+     *
+     */
+    public void close() {
+        this.reactor.close(this);
+    }
+
+    /////////////////
+    // Accesors & modifiers
+    ////////////////
+
+    public InetAddress getInetAddress() {
+        return this.channel.socket().getInetAddress();
+    }
+
+    public long getOpenedTime() {
+        return this.openedTime;
+    }
+
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    public Object getAttachment() {
+        return this.attachment;
+    }
+
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    /////////////////
+    // Reactor side
+    ////////////////
+
+    SocketChannel getChannel() {
+        return this.channel;
+    }
+
+    SelectionKey getKey() {
+        return this.key;
+    }
+
+    boolean isCloseAfterWrite() {
+        return this.closeAfterWrite;
+    }
+
+    boolean isEvicted() {
+        return this.evicted;
+    }
+
+    /**
+     * Acknowledges a write request. Frames queued after this call request a new
+     * write.
+     *
+     */
+    void clearWriteRequest() {
+        this.writeRequested.set(false);
+    }
+
+    void markClosed() {
+        this.closed = true;
+        this.outbound.clear();
+    }
+
+    /**
+     * Reads everything available from the socket into the read buffer, and flips
+     * it for extracting the frames.
+     *
+     * @return - false if the peer closed the connection.
+     * @throws IOException if the read fails.
+     */
+    boolean fillReadBuffer() throws IOException {
+        if (!this.readBuffer.hasRemaining()) {
+            throw new IOException("Inbound frame exceeds the read buffer size.");
+        }
+        int read = this.channel.read(this.readBuffer);
+        this.readBuffer.flip();
+        return read >= 0;
+    }
+
+    /**
+     * Extracts the next complete frame from the read buffer. The returned buffer
+     * is a view of the read buffer, only valid until the next call.
+     *
+     * @return - frame positioned at the opcode, or {@code null} if no full frame
+     *         is buffered.
+     * @throws IOException if the frame length is invalid.
+     */
+    ByteBuffer nextFrame() throws IOException {
+        int length;
+        try {
+            length = TcpCodec.peekFrameLength(this.readBuffer, TcpCodec.MAX_REQUEST_SIZE);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        if (length < 0 || this.readBuffer.remaining() < Integer.BYTES + length) {
+            return null;
+        }
+        int start = this.readBuffer.position() + Integer.BYTES;
+        this.frame.limit(start + length);
+        this.frame.position(start);
+        this.readBuffer.position(start + length);
+        return this.frame;
+    }
+
+    /**
+     * Moves the bytes of incomplete frames to the start of the read buffer, so the
+     * next read appends to them.
+     *
+     */
+    void compactReadBuffer() {
+        this.readBuffer.compact();
+    }
+
+    /**
+     * Writes as much queued data as the socket accepts. Up to
+     * {@link #MAX_GATHERED_FRAMES} frames are written by a single gathering write.
+     *
+     * @return - true if the outbound queue was fully drained.
+     * @throws IOException if the write fails.
+     */
+    boolean flushOutbound() throws IOException {
+        while (true) {
+            ByteBuffer next;
+            while (this.gatheredCount < MAX_GATHERED_FRAMES && (next = this.outbound.poll()) != null) {
+                this.gathered[this.gatheredCount++] = next;
+            }
+            if (this.gatheredCount == 0) {
+                return true;
+            }
+
+            long written = this.channel.write(this.gathered, 0, this.gatheredCount);
+            this.queuedBytes.addAndGet((int) -written);
+
+            int done = 0;
+            while (done < this.gatheredCount && !this.gathered[done].hasRemaining()) {
+                done++;
+            }
+            System.arraycopy(this.gathered, done, this.gathered, 0, this.gatheredCount - done);
+            Arrays.fill(this.gathered, this.gatheredCount - done, this.gatheredCount, null);
+            this.gatheredCount -= done;
+            if (this.gatheredCount > 0) {
+                return false; // Socket send buffer is full
+            }
+        }
+    }
+
+}
@@ -0,0 +1,450 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import flaggiserver.common.Logger;
+import flaggiserver.common.Logger.LogLevel;
+import flaggishared.network.UdpCodec;
+
+/**
+ * Selector based event loop, serving the TCP listener, all TCP client
+ * connections and the UDP channel from a single thread. All channels are
+ * non-blocking, TCP traffic is framed by {@code Connection}. With more than one
+ * UDP worker, datagrams are instead received and processed by a
+ * {@code UdpIngress}, and the reactor only serves TCP.
+ *
+ */
+public class NetworkReactor implements Runnable {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    private static final int UDP_BUFFER_SIZE = UdpCodec.MAX_PACKET_SIZE;
+    private static final long SELECT_TIMEOUT_MS = 100;
+    private static final int SEND_BUFFERS = 4; // Spare pooled buffers for the packet senders
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final Selector selector;
+    private final ServerSocketChannel tcpChannel;
+    private final DatagramChannel udpChannel;
+    private final UdpIngress udpIngress;
+    private final SelectionKey udpKey;
+    private final BufferPool bufferPool;
+    private final Handler handler;
+    private final ByteBuffer udpReceiveBuffer;
+    private final Queue<Connection> pendingWrites;
+    private final Set<Connection> connections;
+    private final long housekeepingIntervalMs;
+    private volatile boolean running;
+    private long lastHousekeeping;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Opens and binds all channels. WILL NOT START THE EVENT LOOP AUTOMATICALLY!!
+     *
+     * @param tcpPort                - port of the TCP listener.
+     * @param udpPort                - port of the UDP channel.
+     * @param housekeepingIntervalMs - period of the {@code Handler#onIdle()}
+     *                               callback.
+     * @param udpWorkers             - number of threads processing datagrams. With
+     *                               a single worker, datagrams are processed by
+     *                               the reactor thread.
+     * @param handler                - network event handler.
+     * @throws IOException if any of the channels can't be opened.
+     */
+    public NetworkReactor(int tcpPort, int udpPort, long housekeepingIntervalMs, int udpWorkers, Handler handler) throws IOException {
+        this.handler = handler;
+        this.housekeepingIntervalMs = housekeepingIntervalMs;
+        this.bufferPool = new BufferPool(UDP_BUFFER_SIZE, 1 + SEND_BUFFERS + (udpWorkers > 1 ? UdpIngress.getBufferCount(udpWorkers) : 0));
+        this.udpReceiveBuffer = this.bufferPool.acquire();
+        this.pendingWrites = new ConcurrentLinkedQueue<Connection>();
+        this.connections = ConcurrentHashMap.newKeySet();
+        this.selector = Selector.open();
+
+        this.tcpChannel = ServerSocketChannel.open();
+        this.tcpChannel.configureBlocking(false);
+        this.tcpChannel.socket().bind(new InetSocketAddress(tcpPort));
+        this.tcpChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+
+        this.udpChannel = DatagramChannel.open();
+        this.udpChannel.configureBlocking(false);
+        this.udpChannel.socket().bind(new InetSocketAddress(udpPort));
+        if (udpWorkers > 1) {
+            this.udpIngress = new UdpIngress(this.udpChannel, udpWorkers, this.bufferPool, handler);
+            this.udpKey = null;
+        } else {
+            this.udpIngress = null;
+            this.udpKey = this.udpChannel.register(this.selector, SelectionKey.OP_READ);
+        }
+    }
+
+    /////////////////
+    // Event loop
+    ////////////////
+
+    /**
+     * Starts the event loop on a new thread.
+     *
+     * @param name - thread name.
+     */
+    public void start(String name) {
+        this.running = true;
+        if (this.udpIngress != null) {
+            this.udpIngress.start(name + " UDP");
+        }
+        new Thread(this, name).start();
+    }
+
+    /**
+     * Stops the event loop and closes all channels.
+     *
+     */
+    public void stop() {
+        this.running = false;
+        if (this.udpIngress != null) {
+            this.udpIngress.stop();
+        }
+        this.selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        this.lastHousekeeping = System.currentTimeMillis();
+        try {
+            while (this.running) {
+                this.selector.select(SELECT_TIMEOUT_MS);
+                processPendingWrites();
+
+                // Handled separately, so datagrams don't need an iterator
+                Set<SelectionKey> selected = this.selector.selectedKeys();
+                if (this.udpKey != null && selected.remove(this.udpKey)) {
+                    receiveDatagrams();
+                }
+
+                Iterator<SelectionKey> keys = selected.isEmpty() ? null : selected.iterator();
+                while (keys != null && keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(connection);
+                        }
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - this.lastHousekeeping >= this.housekeepingIntervalMs) {
+                    this.lastHousekeeping = now;
+                    this.handler.onIdle();
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            Logger.log(LogLevel.ERROR, "An IO Exception occurred in the network reactor.", e);
+            this.handler.onFatalError();
+        } finally {
+            closeChannels();
+        }
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Sends a datagram through the UDP channel. If the socket send buffer is full,
+     * the datagram is dropped. Direct buffers are sent without being copied.
+     *
+     * @param data   - datagram content, from position to limit.
+     * @param target - target address.
+     */
+    public void sendDatagram(ByteBuffer data, SocketAddress target) {
+        try {
+            this.udpChannel.send(data, target);
+        } catch (IOException e) {
+            Logger.log(LogLevel.WARN, "Failed to send a datagram to " + target, e);
+        }
+    }
+
+    /**
+     * Returns the pool of direct buffers used for the UDP traffic. Packet senders
+     * should take their buffers from it.
+     *
+     * @return - buffer pool.
+     */
+    public BufferPool getBufferPool() {
+        return this.bufferPool;
+    }
+
+    /**
+     * Returns the local port of the UDP channel.
+     *
+     * @return - UDP port.
+     */
+    public int getUdpPort() {
+        return this.udpChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the currently open TCP connections.
+     *
+     * @return - live view of the open connections.
+     */
+    public Set<Connection> getConnections() {
+        return this.connections;
+    }
+
+    /////////////////
+    // Connection side
+    ////////////////
+
+    /**
+     * Marks a connection as having queued data and wakes up the selector.
+     *
+     * @param connection - target connection.
+     */
+    void requestWrite(Connection connection) {
+        this.pendingWrites.add(connection);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Closes a connection and notifies the handler. Calling it more than once has
+     * no effect.
+     *
+     * @param connection - target connection.
+     */
+    void close(Connection connection) {
+        synchronized (connection) {
+            if (connection.isClosed()) {
+                return;
+            }
+            connection.markClosed();
+        }
+        this.connections.remove(connection);
+        connection.getKey().cancel();
+        try {
+            connection.getChannel().close();
+        } catch (IOException e) {
+            Logger.log(LogLevel.WARN, "Failed to close a client channel.", e);
+        }
+        this.handler.onDisconnect(connection);
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    private void accept() throws IOException {
+        SocketChannel channel = this.tcpChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+        Connection connection = new Connection(this, channel, key);
+        key.attach(connection);
+        this.connections.add(connection);
+        Logger.log(LogLevel.DEBUG, "New client connection established.");
+        this.handler.onConnect(connection);
+    }
+
+    private void read(Connection connection) {
+        try {
+            boolean open = connection.fillReadBuffer();
+            ByteBuffer frame;
+            while (!connection.isClosed() && (frame = connection.nextFrame()) != null) {
+                this.handler.onMessage(connection, frame.get(), frame);
+            }
+            connection.compactReadBuffer();
+            if (!open) {
+                close(connection);
+            }
+        } catch (IOException e) {
+            Logger.log(LogLevel.WARN, "Client connection read failed: " + e.getMessage());
+            close(connection);
+        } catch (Exception e) {
+            Logger.log(LogLevel.ERROR, "Exception occurred while handling a client message.", e);
+            close(connection);
+        }
+    }
+
+    private void write(Connection connection) {
+        try {
+            if (connection.flushOutbound()) {
+                if (connection.isCloseAfterWrite()) {
+                    close(connection);
+                } else {
+                    connection.getKey().interestOps(SelectionKey.OP_READ);
+                }
+            }
+        } catch (IOException e) {
+            Logger.log(LogLevel.WARN, "Client connection write failed: " + e.getMessage());
+            close(connection);
+        }
+    }
+
+    private void processPendingWrites() {
+        Connection connection;
+        while ((connection = this.pendingWrites.poll()) != null) {
+            if (connection.isClosed()) {
+                continue;
+            }
+            if (connection.isEvicted()) {
+                Logger.log(LogLevel.WARN, "Client connection exceeded the outbound queue limit of " + Connection.MAX_QUEUED_BYTES + " bytes. Closing...");
+                close(connection);
+            } else if (connection.getKey().isValid()) {
+                connection.clearWriteRequest();
+                connection.getKey().interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private void receiveDatagrams() throws IOException {
+        SocketAddress sender;
+        while ((sender = this.udpChannel.receive(this.udpReceiveBuffer)) != null) {
+            this.udpReceiveBuffer.flip();
+            try {
+                this.handler.onDatagram(this.udpReceiveBuffer, (InetSocketAddress) sender);
+            } catch (Exception e) {
+                Logger.log(LogLevel.ERROR, "Exception occurred while handling a datagram.", e);
+            }
+            this.udpReceiveBuffer.clear();
+        }
+    }
+
+    private void closeChannels() {
+        for (Connection connection : this.connections) {
+            close(connection);
+        }
+        if (this.udpIngress != null) {
+            this.udpIngress.stop();
+        }
+        try {
+            this.tcpChannel.close();
+            this.udpChannel.close();
+            this.selector.close();
+        } catch (IOException e) {
+            Logger.log(LogLevel.WARN, "Failed to close the reactor channels.", e);
+        }
+    }
+
+    /////////////////
+    // Handler interface
+    ////////////////
+
+    /**
+     * Callbacks of the reactor. All of them are executed on the reactor thread
+     * (except for datagrams with multiple UDP workers), and must not block.
+     *
+     */
+    public interface Handler {
+
+        /**
+         * Called when a new TCP connection is accepted.
+         *
+         * @param connection - the new connection.
+         */
+        public void onConnect(Connection connection);
+
+        /**
+         * Called for every complete frame received through TCP. The frame is only
+         * valid until the call returns.
+         *
+         * @param connection - source connection.
+         * @param opcode     - message opcode.
+         * @param body       - message body.
+         */
+        public void onMessage(Connection connection, int opcode, ByteBuffer body);
+
+        /**
+         * Called once after a TCP connection got closed, by either side.
+         *
+         * @param connection - closed connection.
+         */
+        public void onDisconnect(Connection connection);
+
+        /**
+         * Called for every received datagram. The buffer is reused after the call
+         * returns. When multiple UDP workers are used, it is called from the worker
+         * threads instead of the reactor thread, but datagrams of the same client
+         * are always handled by the same thread.
+         *
+         * @param data   - datagram content.
+         * @param sender - source address.
+         */
+        public void onDatagram(ByteBuffer data, InetSocketAddress sender);
+
+        /**
+         * Called periodically for housekeeping tasks.
+         *
+         */
+        public void onIdle();
+
+        /**
+         * Called when the reactor can't continue running.
+         *
+         */
+        public void onFatalError();
+
+    }
+
+}
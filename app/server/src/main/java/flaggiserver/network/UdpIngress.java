@@ -0,0 +1,256 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import flaggiserver.common.Logger;
+import flaggiserver.common.Logger.LogLevel;
+import flaggishared.network.UdpCodec;
+
+/**
+ * Multi-threaded UDP ingress. A receiver thread drains the UDP channel and
+ * hands every datagram to one of the worker threads, chosen by the client ID
+ * of the packet. Datagrams of a single client are always processed by the same
+ * worker in the order they were received, so per-client ordering is kept while
+ * different clients are processed in parallel. If the queue of a worker is
+ * full, the datagram is dropped.
+ *
+ */
+public class UdpIngress {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    private static final int QUEUE_CAPACITY = 256; // Datagrams per worker
+    private static final long SELECT_TIMEOUT_MS = 100;
+    private static final long DROP_LOG_INTERVAL = 1000;
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final DatagramChannel channel;
+    private final NetworkReactor.Handler handler;
+    private final Selector selector;
+    private final ByteBuffer receiveBuffer;
+    private final Worker[] workers;
+    private volatile boolean running;
+    private long droppedDatagrams;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Registers the channel with the ingress selector. WILL NOT START THE THREADS
+     * AUTOMATICALLY!!
+     *
+     * @param channel     - bound, non-blocking UDP channel.
+     * @param workerCount - number of worker threads.
+     * @param bufferPool  - pool the receive buffer and the datagram slots are
+     *                    taken from.
+     * @param handler     - handler called by the workers. Must be safe to call
+     *                    from multiple threads at once, for different clients.
+     * @throws IOException if the selector can't be opened.
+     */
+    UdpIngress(DatagramChannel channel, int workerCount, BufferPool bufferPool, NetworkReactor.Handler handler) throws IOException {
+        this.channel = channel;
+        this.handler = handler;
+        this.receiveBuffer = bufferPool.acquire();
+        this.selector = Selector.open();
+        this.channel.register(this.selector, SelectionKey.OP_READ);
+
+        this.workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            this.workers[i] = new Worker(bufferPool);
+        }
+    }
+
+    /**
+     * Returns the number of buffers the ingress takes from the pool.
+     *
+     * @param workerCount - number of worker threads.
+     * @return - buffer count.
+     */
+    static int getBufferCount(int workerCount) {
+        return 1 + workerCount * QUEUE_CAPACITY;
+    }
+
+    /////////////////
+    // Threads
+    ////////////////
+
+    /**
+     * Starts the receiver and all worker threads.
+     *
+     * @param name - thread name prefix.
+     */
+    void start(String name) {
+        this.running = true;
+        for (int i = 0; i < this.workers.length; i++) {
+            new Thread(this.workers[i], name + " worker " + i).start();
+        }
+        new Thread(this::receive, name + " receiver").start();
+    }
+
+    /**
+     * Stops all threads. The channel is not closed.
+     *
+     */
+    void stop() {
+        this.running = false;
+        this.selector.wakeup();
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    private void receive() {
+        try {
+            while (this.running) {
+                this.selector.select(SELECT_TIMEOUT_MS);
+                this.selector.selectedKeys().clear();
+
+                InetSocketAddress sender;
+                while ((sender = (InetSocketAddress) this.channel.receive(this.receiveBuffer)) != null) {
+                    this.receiveBuffer.flip();
+                    dispatch(this.receiveBuffer, sender);
+                    this.receiveBuffer.clear();
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (this.running) {
+                Logger.log(LogLevel.ERROR, "An IO Exception occurred in the UDP receiver.", e);
+                this.handler.onFatalError();
+            }
+        } finally {
+            this.running = false;
+            try {
+                this.selector.close();
+            } catch (IOException e) {
+                Logger.log(LogLevel.WARN, "Failed to close the UDP ingress selector.", e);
+            }
+        }
+    }
+
+    /**
+     * Copies a datagram into a free slot of the worker responsible for its client.
+     *
+     * @param data   - datagram content.
+     * @param sender - source address.
+     */
+    private void dispatch(ByteBuffer data, InetSocketAddress sender) {
+        int clientId = UdpCodec.peekPlayerId(data);
+        Worker worker = this.workers[clientId < 0 ? 0 : clientId % this.workers.length];
+        Datagram slot = worker.free.poll();
+        if (slot == null) {
+            if (this.droppedDatagrams++ % DROP_LOG_INTERVAL == 0) {
+                Logger.log(LogLevel.WARN, "UDP worker queue is full, " + this.droppedDatagrams + " datagrams dropped so far.");
+            }
+            return;
+        }
+        slot.data.clear();
+        slot.data.put(data);
+        slot.data.flip();
+        slot.sender = sender;
+        worker.inbound.add(slot);
+    }
+
+    /////////////////
+    // Worker class
+    ////////////////
+
+    /**
+     * A single worker thread with a fixed pool of datagram slots. Slots cycle
+     * between the free queue and the inbound queue, so nothing is allocated per
+     * datagram.
+     *
+     */
+    private class Worker implements Runnable {
+
+        private final BlockingQueue<Datagram> free = new ArrayBlockingQueue<Datagram>(QUEUE_CAPACITY);
+        private final BlockingQueue<Datagram> inbound = new ArrayBlockingQueue<Datagram>(QUEUE_CAPACITY);
+
+        public Worker(BufferPool bufferPool) {
+            for (int i = 0; i < QUEUE_CAPACITY; i++) {
+                this.free.add(new Datagram(bufferPool.acquire()));
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Datagram datagram;
+                try {
+                    datagram = this.inbound.poll(SELECT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (datagram == null) {
+                    continue;
+                }
+                try {
+                    handler.onDatagram(datagram.data, datagram.sender);
+                } catch (Exception e) {
+                    Logger.log(LogLevel.ERROR, "Exception occurred while handling a datagram.", e);
+                }
+                datagram.sender = null;
+                this.free.add(datagram);
+            }
+        }
+
+    }
+
+    /**
+     * Reusable datagram slot.
+     *
+     */
+    private static class Datagram {
+
+        private final ByteBuffer data;
+        private InetSocketAddress sender;
+
+        public Datagram(ByteBuffer data) {
+            this.data = data;
+        }
+
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package flaggiserver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import flaggiserver.common.ClientStruct;
+import flaggiserver.common.ProjectileStore;
+import flaggiserver.common.Room;
+import flaggiserver.network.Connection;
+import flaggiserver.network.NetworkReactor;
+import flaggishared.common.ColliderIndex;
+import flaggishared.common.MapData;
+import flaggishared.network.BulletSpawn;
+import flaggishared.network.ClientInput;
+import flaggishared.network.FragmentAssembler;
+import flaggishared.network.Snapshot;
+import flaggishared.network.SnapshotHistory;
+import flaggishared.network.UdpCodec;
+
+/**
+ * Checks that the UDP paths of the server don't allocate per packet once warmed
+ * up, using the allocated bytes counters of the threads running them. Client
+ * inputs carrying bullets are sent in bursts, and handled by the server on the
+ * network reactor thread. After every burst, the test thread plays the game
+ * loop: decays the bullets, and sends the room snapshots to both members, with
+ * the bullet events, delta compressed against the acknowledged snapshots.
+ *
+ */
+public class UdpAllocationTest {
+
+    private static final int WARMUP_BURSTS = 300;
+    private static final int MEASURED_BURSTS = 300;
+    private static final int BURST_SIZE = 64;
+    private static final int MAX_BYTES_PER_PACKET = 4; // Less than the smallest object
+    private static final int MAP_SIZE = 4000;
+    private static final int ROOM_ID = 1;
+    private static final int TICK_RATE = 20;
+    private static final int MAX_REWIND_MS = 200;
+    private static final long TIMEOUT_MS = 30_000;
+
+    @Test
+    void udpPathsDoNotAllocate() throws Exception {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return; // Nothing to measure on this JVM
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // ---- A room with two members, a shooter and its target
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        MapData map = new MapData("Empty", MAP_SIZE, MAP_SIZE);
+        Room room = new Room(ROOM_ID, map, new ColliderIndex(map, 5), "");
+        ClientStruct shooter = Server.clients.register("Shooter", "default", loopback);
+        ClientStruct target = Server.clients.register("Target", "default", loopback);
+        room.addMember(shooter);
+        room.addMember(target);
+        Server.openRoom(room);
+        Server.tickRate = TICK_RATE;
+        Server.maxRewindMillis = MAX_REWIND_MS;
+
+        // ---- The real UDP handler and game loop, the game loop is stepped by hand
+        CountingHandler handler = new CountingHandler(threads);
+        Server.reactor = new NetworkReactor(0, 0, TIMEOUT_MS, 1, handler);
+        Server.reactor.start("Allocation test reactor");
+        Server.gameLoop = new Server.GameLoop(TICK_RATE, TICK_RATE, 1, Server.reactor.getBufferPool());
+
+        long snapshotAllocated = 0;
+        int snapshotPackets = 0;
+        try (DatagramChannel shooterChannel = DatagramChannel.open(); DatagramChannel targetChannel = DatagramChannel.open()) {
+            shooterChannel.connect(new InetSocketAddress(loopback, Server.reactor.getUdpPort()));
+            shooterChannel.configureBlocking(false);
+            targetChannel.bind(new InetSocketAddress(loopback, 0));
+            targetChannel.configureBlocking(false);
+            target.setUdpAddress((InetSocketAddress) targetChannel.getLocalAddress());
+
+            ShooterClient client = new ShooterClient(shooter.getID(), shooterChannel);
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            for (int burst = 0; burst < WARMUP_BURSTS + MEASURED_BURSTS; burst++) {
+                boolean measured = burst >= WARMUP_BURSTS;
+                handler.measured = measured;
+                client.sendBurst();
+
+                // Wait for the burst, so no datagram gets dropped by a full socket buffer
+                while (handler.received < client.sequence) {
+                    assertTrue(System.currentTimeMillis() < deadline, "Timed out after " + handler.received + " datagrams.");
+                    Thread.sleep(1);
+                }
+
+                // ---- Game loop tick
+                Server.gameLoop.tick++;
+                expireProjectiles(room);
+                long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                Server.gameLoop.broadcastSnapshots();
+                long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+                int received = client.receiveSnapshots();
+                int dropped = drain(targetChannel);
+                assertEquals(Server.gameLoop.tick, client.lastTick, "Snapshot of tick " + Server.gameLoop.tick + " wasn't received.");
+                if (measured) {
+                    snapshotAllocated += allocated;
+                    snapshotPackets += received + dropped;
+                }
+            }
+        } finally {
+            Server.reactor.stop();
+            Server.gameLoop.stop();
+            Server.closeRoom(ROOM_ID);
+            Server.clients.remove(shooter.getID());
+            Server.clients.remove(target.getID());
+        }
+
+        int inputPackets = MEASURED_BURSTS * BURST_SIZE;
+        assertEquals(WARMUP_BURSTS * BURST_SIZE + inputPackets, handler.received, "Datagrams were lost");
+        assertTrue(snapshotPackets > 2 * MEASURED_BURSTS, "Snapshots weren't split into fragments.");
+        assertTrue(handler.allocated < (long) inputPackets * MAX_BYTES_PER_PACKET, "Receive path allocated " + handler.allocated + " bytes for " + inputPackets + " datagrams.");
+        assertTrue(snapshotAllocated < (long) snapshotPackets * MAX_BYTES_PER_PACKET, "Snapshot sending allocated " + snapshotAllocated + " bytes for " + snapshotPackets + " datagrams.");
+    }
+
+    /////////////////
+    // Helpers
+    ////////////////
+
+    /**
+     * Decays all projectiles of a room, as the game loop does once they outlive
+     * their decay time, turning them into despawn events.
+     *
+     * @param room - target room.
+     */
+    private static void expireProjectiles(Room room) {
+        ProjectileStore projectiles = room.getProjectiles();
+        synchronized (projectiles) {
+            projectiles.advance(Long.MAX_VALUE / 2);
+        }
+    }
+
+    /**
+     * Reads and drops all datagrams waiting on a channel.
+     *
+     * @param channel - non-blocking channel.
+     * @return - number of dropped datagrams.
+     */
+    private static int drain(DatagramChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(UdpCodec.MAX_PACKET_SIZE);
+        int count = 0;
+        while (channel.receive(buffer) != null) {
+            buffer.clear();
+            count++;
+        }
+        return count;
+    }
+
+    /////////////////
+    // Test client
+    ////////////////
+
+    /**
+     * Client shooting a bullet with every input, and acknowledging the snapshots
+     * and bullet events it receives, as the game client does.
+     *
+     */
+    private static class ShooterClient {
+
+        private final DatagramChannel channel;
+        private final ByteBuffer packet = ByteBuffer.allocateDirect(UdpCodec.MAX_PACKET_SIZE);
+        private final ClientInput input = new ClientInput();
+        private final FragmentAssembler fragments = new FragmentAssembler();
+        private final SnapshotHistory history = new SnapshotHistory(32);
+        private final Snapshot snapshot = new Snapshot();
+        private int sequence, lastTick, eventSequence;
+
+        public ShooterClient(int playerId, DatagramChannel channel) {
+            this.channel = channel;
+            this.input.playerId = playerId;
+            this.input.buttons = 1;
+        }
+
+        /**
+         * Sends a burst of inputs, each with a new bullet.
+         *
+         */
+        public void sendBurst() throws IOException {
+            for (int i = 0; i < BURST_SIZE; i++) {
+                this.input.sequence = this.sequence;
+                this.input.ackTick = this.lastTick;
+                this.input.eventAck = this.eventSequence;
+                this.input.clearBullets();
+                BulletSpawn bullet = this.input.addBullet();
+                bullet.set(this.input.playerId, this.sequence, 100, 100, 1000, 1000, 1000, 500, 0);
+
+                this.packet.clear();
+                UdpCodec.encodeClientInput(this.packet, this.input);
+                this.packet.flip();
+                this.channel.write(this.packet);
+                this.sequence++;
+            }
+        }
+
+        /**
+         * Receives the waiting snapshots, and acknowledges them with their events.
+         *
+         * @return - number of received datagrams.
+         */
+        public int receiveSnapshots() throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(UdpCodec.MAX_PACKET_SIZE);
+            int count = 0;
+            while (this.channel.read(buffer) > 0) {
+                count++;
+                buffer.flip();
+                ByteBuffer packet = buffer;
+                int type = UdpCodec.readHeader(packet);
+                if (type == UdpCodec.TYPE_FRAGMENT) {
+                    if (this.fragments.add(packet)) {
+                        packet = this.fragments.getPacket();
+                        type = UdpCodec.readHeader(packet);
+                    }
+                }
+                if (type == UdpCodec.TYPE_SNAPSHOT && UdpCodec.decodeSnapshot(packet, this.snapshot, this.history)) {
+                    this.history.add().copyFrom(this.snapshot);
+                    this.lastTick = this.snapshot.getTick();
+                    this.eventSequence = this.snapshot.getFirstEventSequence() + this.snapshot.getEventCount();
+                }
+                buffer.clear();
+            }
+            return count;
+        }
+
+    }
+
+    /////////////////
+    // Test handler
+    ////////////////
+
+    /**
+     * Passes the datagrams to the server, counts them, and sums the bytes the
+     * reactor thread allocated while handling the measured ones.
+     *
+     */
+    private static class CountingHandler implements NetworkReactor.Handler {
+
+        private final NetworkReactor.Handler server = new Server.NetworkEvents();
+        private final ThreadMXBean threads;
+        private volatile int received;
+        private volatile boolean measured;
+        private volatile long allocated;
+
+        public CountingHandler(ThreadMXBean threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        public void onDatagram(ByteBuffer data, InetSocketAddress sender) {
+            long before = this.threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            this.server.onDatagram(data, sender);
+            if (this.measured) {
+                this.allocated += this.threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+            }
+            this.received++;
+        }
+
+        @Override
+        public void onConnect(Connection connection) {
+        }
+
+        @Override
+        public void onMessage(Connection connection, int opcode, ByteBuffer body) {
+        }
+
+        @Override
+        public void onDisconnect(Connection connection) {
+        }
+
+        @Override
+        public void onIdle() {
+        }
+
+        @Override
+        public void onFatalError() {
+            fail("Network reactor failed.");
+        }
+
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.common;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import flaggishared.network.BulletSpawn;
+
+/**
+ * Measures the projectile part of a room tick with 64 players and 2,000 live
+ * projectiles, the worst case of a single busy room: recording the player
+ * positions for lag compensation, advancing the projectiles, and detecting
+ * their hits with rewound players. Timings depend on the machine, so nothing is
+ * asserted, the average cost of each step is published as a report entry. Run
+ * on demand by the {@code benchmark} task, the {@code test} task skips it.
+ *
+ */
+@Tag("benchmark")
+public class HitDetectorBenchmarkTest {
+
+    private static final int WARMUP_TICKS = 2_000;
+    private static final int MEASURED_TICKS = 2_000;
+    private static final int TICK_MILLIS = 50;
+    private static final int REWIND_MILLIS = 100;
+    private static final int PLAYER_STEP = 20; // Farthest a player moves in a tick
+
+    @Test
+    void roomTickWithBusyRoom(TestReporter reporter) {
+        Random random = new Random(7);
+        ClientStruct[] players = HitDetectorTest.createPlayers(random);
+        BulletSpawn[] spawns = HitDetectorTest.createSpawns(random);
+        ProjectileStore projectiles = new ProjectileStore();
+        HitDetector detector = new HitDetector();
+
+        long recordNanos = 0, advanceNanos = 0, detectNanos = 0, hits = 0;
+        int nextSpawn = 0;
+        long now = 0;
+        for (int tick = 0; tick < WARMUP_TICKS + MEASURED_TICKS; tick++) {
+            now += TICK_MILLIS;
+
+            // Replace the projectiles that hit or decayed, as clients keep shooting
+            while (projectiles.size() < HitDetectorTest.PROJECTILES) {
+                BulletSpawn spawn = spawns[nextSpawn++ % spawns.length];
+                projectiles.add(spawn, spawn.ownerId, now - TICK_MILLIS, REWIND_MILLIS);
+            }
+            projectiles.getChanges().clear(); // Sent with every snapshot
+            for (ClientStruct player : players) {
+                int x = Math.max(0, Math.min(HitDetectorTest.AREA_SIZE, player.getX() + random.nextInt(2 * PLAYER_STEP + 1) - PLAYER_STEP));
+                int y = Math.max(0, Math.min(HitDetectorTest.AREA_SIZE, player.getY() + random.nextInt(2 * PLAYER_STEP + 1) - PLAYER_STEP));
+                player.setPosition(x, y);
+            }
+
+            long start = System.nanoTime();
+            for (ClientStruct player : players) {
+                player.getPositionHistory().record(now, player.getX(), player.getY());
+            }
+            long recorded = System.nanoTime();
+            projectiles.advance(now);
+            long advanced = System.nanoTime();
+            int tickHits = detector.detect(projectiles, players, HitDetectorTest.NO_OBSTACLES, HitDetectorTest.AREA_SIZE, HitDetectorTest.AREA_SIZE, now);
+            long detected = System.nanoTime();
+
+            if (tick >= WARMUP_TICKS) {
+                recordNanos += recorded - start;
+                advanceNanos += advanced - recorded;
+                detectNanos += detected - advanced;
+                hits += tickHits;
+            }
+        }
+
+        reporter.publishEntry("players", String.valueOf(HitDetectorTest.PLAYERS));
+        reporter.publishEntry("projectiles", String.valueOf(HitDetectorTest.PROJECTILES));
+        reporter.publishEntry("hits per tick", String.valueOf(hits / MEASURED_TICKS));
+        reporter.publishEntry("record ns per tick", String.valueOf(recordNanos / MEASURED_TICKS));
+        reporter.publishEntry("advance ns per tick", String.valueOf(advanceNanos / MEASURED_TICKS));
+        reporter.publishEntry("detect ns per tick", String.valueOf(detectNanos / MEASURED_TICKS));
+        reporter.publishEntry("total ns per tick", String.valueOf((recordNanos + advanceNanos + detectNanos) / MEASURED_TICKS));
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.common;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import flaggishared.common.ColliderIndex;
+import flaggishared.common.MapData;
+import flaggishared.common.MapData.ObjectType;
+import flaggishared.network.BulletSpawn;
+
+/**
+ * Checks the hit detection broadphase against testing every projectile against
+ * every player, that projectiles fast enough to jump over a player in a single
+ * tick still hit, that obstacles stop them, and that players are tested where
+ * the shooter saw them.
+ *
+ */
+public class HitDetectorTest {
+
+    static final int PLAYERS = 64;
+    static final int PROJECTILES = 2_000;
+    static final int AREA_SIZE = 4_000;
+    static final ColliderIndex NO_OBSTACLES = new ColliderIndex(new MapData("Empty", AREA_SIZE, AREA_SIZE), 5);
+
+    @Test
+    void findsTheSameHitsAsBruteForce() {
+        Random random = new Random(42);
+        HitDetector detector = new HitDetector();
+        for (int round = 0; round < 50; round++) {
+            ClientStruct[] players = createPlayers(random);
+            ProjectileStore projectiles = new ProjectileStore();
+            BulletSpawn[] spawns = createSpawns(random);
+            fill(projectiles, spawns);
+
+            int[] expected = new int[PLAYERS];
+            int expectedHits = 0;
+            for (BulletSpawn spawn : spawns) {
+                int target = bruteForceTarget(spawn, players);
+                if (target != -1) {
+                    expected[target]++;
+                    expectedHits++;
+                }
+            }
+
+            int hits = detector.detect(projectiles, players, NO_OBSTACLES, AREA_SIZE, AREA_SIZE, 0);
+            int[] actual = new int[PLAYERS];
+            for (int i = 0; i < hits; i++) {
+                actual[detector.getHit(i).getID()]++;
+            }
+            assertEquals(expectedHits, hits, "Hit count of round " + round);
+            assertArrayEquals(expected, actual);
+            assertEquals(PROJECTILES - hits, projectiles.size(), "Hit projectiles must be removed");
+        }
+    }
+
+    @Test
+    void fastProjectilesDontTunnelThroughPlayers() {
+        ClientStruct[] players = new ClientStruct[] { new ClientStruct(0, "Shooter", "default_blue", null), new ClientStruct(1, "Near", "default_blue", null), new ClientStruct(2, "Far", "default_blue", null) };
+        players[0].setPosition(0, 1_000);
+        players[1].setPosition(1_000, 1_000);
+        players[2].setPosition(1_500, 1_000);
+
+        // 2,000 units per second, 100 units per tick at 20 Hz, wider than the hitbox
+        BulletSpawn spawn = new BulletSpawn();
+        spawn.set(0, 0, 100, 1_040, 3_000, 1_040, 2_000, 2_000, 0);
+        ProjectileStore projectiles = new ProjectileStore();
+        projectiles.add(spawn, 0, 0);
+        HitDetector detector = new HitDetector();
+
+        int hits = 0;
+        for (long time = 50; time < 2_000 && hits == 0; time += 50) {
+            projectiles.advance(time);
+            hits = detector.detect(projectiles, players, NO_OBSTACLES, AREA_SIZE, AREA_SIZE, 0);
+        }
+        assertEquals(1, hits);
+        assertSame(players[1], detector.getHit(0));
+        assertTrue(projectiles.isEmpty());
+
+        // A path crossing two players hits the one it reaches first
+        projectiles.add(spawn, 0, 0);
+        projectiles.advance(1_000);
+        assertEquals(1, detector.detect(projectiles, players, NO_OBSTACLES, AREA_SIZE, AREA_SIZE, 0));
+        assertSame(players[1], detector.getHit(0));
+
+        // An obstacle in the way stops the projectile
+        MapData map = new MapData("Tree", AREA_SIZE, AREA_SIZE);
+        map.newGameObject(ObjectType.TREE, 200, 450);
+        ColliderIndex obstacles = new ColliderIndex(map, 5);
+        projectiles.add(spawn, 0, 0);
+        projectiles.advance(1_000);
+        assertEquals(0, detector.detect(projectiles, players, obstacles, AREA_SIZE, AREA_SIZE, 0));
+        assertTrue(projectiles.isEmpty());
+
+        // Paths passing around a player miss it
+        assertEquals(Double.MAX_VALUE, HitDetector.sweep(0, 0, 3_000, 0, 1_007, 1_007), 0);
+        assertEquals(Double.MAX_VALUE, HitDetector.sweep(1_000, 0, 1_000, 3_000, 1_007, 1_007), 0);
+        assertEquals(0.25, HitDetector.sweep(1_000, 1_050, 1_100, 1_050, 1_030, 1_007), 0.001);
+    }
+
+    @Test
+    void hitsAreTestedAgainstRewoundPositions() {
+        ClientStruct[] players = new ClientStruct[] { new ClientStruct(0, "Shooter", "default_blue", null), new ClientStruct(1, "Runner", "default_blue", null) };
+        players[0].setPosition(0, 3_000);
+
+        // Runner moves from 1,000 to 2,000 during a second, recorded every tick
+        for (long time = 0; time <= 1_000; time += 50) {
+            players[1].setPosition(1_000 + (int) time, 1_000);
+            players[1].getPositionHistory().record(time, players[1].getX(), players[1].getY());
+        }
+
+        // A projectile crossing the old position of the runner in a single tick
+        BulletSpawn spawn = new BulletSpawn();
+        spawn.set(0, 0, 1_020, 0, 1_020, 3_000, 2_000, 40_000, 0);
+        ProjectileStore projectiles = new ProjectileStore();
+        HitDetector detector = new HitDetector();
+        projectiles.add(spawn, 0, 950);
+        projectiles.advance(1_000);
+        assertEquals(0, detector.detect(projectiles, players, NO_OBSTACLES, AREA_SIZE, AREA_SIZE, 1_000), "Runner isn't there anymore");
+
+        projectiles.advance(2_000); // Decays
+        projectiles.add(spawn, 0, 950, 1_000);
+        projectiles.advance(1_000);
+        assertEquals(1, detector.detect(projectiles, players, NO_OBSTACLES, AREA_SIZE, AREA_SIZE, 1_000), "Shooter saw the runner a second ago");
+        assertSame(players[1], detector.getHit(0));
+    }
+
+    /////////////////
+    // Helper methods
+    ////////////////
+
+    static ClientStruct[] createPlayers(Random random) {
+        ClientStruct[] players = new ClientStruct[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = new ClientStruct(i, "Player " + i, "default_blue", null);
+            players[i].setPosition(random.nextInt(AREA_SIZE), random.nextInt(AREA_SIZE));
+        }
+        return players;
+    }
+
+    static BulletSpawn[] createSpawns(Random random) {
+        BulletSpawn[] spawns = new BulletSpawn[PROJECTILES];
+        for (int i = 0; i < PROJECTILES; i++) {
+            int x = random.nextInt(AREA_SIZE);
+            int y = random.nextInt(AREA_SIZE);
+            spawns[i] = new BulletSpawn();
+            spawns[i].set(random.nextInt(PLAYERS), i, x, y, x + 100, y, 1_000, 1_000, 0);
+        }
+        return spawns;
+    }
+
+    static void fill(ProjectileStore projectiles, BulletSpawn[] spawns) {
+        while (!projectiles.isEmpty()) {
+            projectiles.remove(projectiles.size() - 1);
+        }
+        for (BulletSpawn spawn : spawns) {
+            projectiles.add(spawn, spawn.ownerId, 0);
+        }
+    }
+
+    static int bruteForceTarget(BulletSpawn spawn, ClientStruct[] players) {
+        for (int i = 0; i < players.length; i++) {
+            ClientStruct player = players[i];
+            int x = player.getX() + HitDetector.PLAYER_HITBOX_OFFSET_X;
+            int y = player.getY() + HitDetector.PLAYER_HITBOX_OFFSET_Y;
+            if (player.getID() != spawn.ownerId && HitDetector.intersects(spawn.initialX, spawn.initialY, HitDetector.PROJECTILE_SIZE, HitDetector.PROJECTILE_SIZE, x, y, HitDetector.PLAYER_HITBOX_WIDTH, HitDetector.PLAYER_HITBOX_HEIGHT)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggiserver.common;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the position history interpolates between its records, clamps
+ * rewinds to the time it covers, and forgets the player after a respawn.
+ *
+ */
+public class PositionHistoryTest {
+
+    private static final int CAPACITY = 8;
+
+    @Test
+    void positionsBetweenRecordsAreInterpolated() {
+        PositionHistory history = new PositionHistory(CAPACITY);
+        history.record(0, 1_000, 2_000);
+        history.record(50, 1_100, 1_900);
+        history.record(100, 1_100, 1_700);
+        int[] position = new int[2];
+
+        assertTrue(history.rewind(25, position));
+        assertArrayEquals(new int[] { 1_050, 1_950 }, position);
+        assertTrue(history.rewind(75, position));
+        assertArrayEquals(new int[] { 1_100, 1_800 }, position);
+        assertTrue(history.rewind(50, position));
+        assertArrayEquals(new int[] { 1_100, 1_900 }, position); // Exactly on a record
+    }
+
+    @Test
+    void rewindsAreClampedToTheRecordedTime() {
+        PositionHistory history = new PositionHistory(CAPACITY);
+        for (int tick = 0; tick < 3 * CAPACITY; tick++) {
+            history.record(tick * 50, tick * 10, 0);
+        }
+        assertEquals(CAPACITY, history.size());
+        int[] position = new int[2];
+
+        // Only the last 8 ticks are kept, older rewinds stop at the oldest one
+        assertTrue(history.rewind(0, position));
+        assertArrayEquals(new int[] { 160, 0 }, position);
+        assertTrue(history.rewind(799, position));
+        assertArrayEquals(new int[] { 160, 0 }, position);
+        assertTrue(history.rewind(10_000, position));
+        assertArrayEquals(new int[] { 230, 0 }, position); // Future rewinds give the newest one
+
+        // Bounds only grow by the positions since the rewind cap
+        int[] bounds = new int[] { 230, 0, 230, 0 };
+        history.includeBounds(1_000, bounds);
+        assertArrayEquals(new int[] { 200, 0, 230, 0 }, bounds);
+        bounds = new int[] { 230, 0, 230, 0 };
+        history.includeBounds(0, bounds);
+        assertArrayEquals(new int[] { 160, 0, 230, 0 }, bounds);
+    }
+
+    @Test
+    void respawnedPlayersArentRewoundToWhereTheyDied() {
+        PositionHistory history = new PositionHistory(CAPACITY);
+        history.record(0, 1_000, 1_000);
+        history.record(50, 1_050, 1_000);
+        history.clear();
+        int[] position = new int[] { -1, -1 };
+        assertFalse(history.rewind(25, position));
+        assertArrayEquals(new int[] { -1, -1 }, position);
+
+        // The spawnpoint is recorded on the next tick, and nothing before it
+        history.record(100, 3_000, 500);
+        assertTrue(history.rewind(25, position));
+        assertArrayEquals(new int[] { 3_000, 500 }, position);
+        assertEquals(1, history.size());
+    }
+
+}
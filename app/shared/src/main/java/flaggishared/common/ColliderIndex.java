@@ -0,0 +1,254 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggishared.common;
+
+import flaggishared.common.MapData.ObjectData;
+import flaggishared.common.MapData.ObjectType;
+
+/**
+ * Immutable index of the static obstacles of a map, built once when the map is
+ * loaded from the collision boxes of its object types. The boxes are packed into
+ * arrays, and referenced from a uniform grid, so a query only tests the boxes
+ * in the cells it touches. Queries don't allocate, and the index can be shared
+ * by any number of threads.
+ *
+ */
+public class ColliderIndex {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    private static final int CELL_SIZE = 256;
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final int columns, rows, count;
+    private final int[] minX, minY, maxX, maxY, cellStart, cellItems;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Builds the index of a map.
+     *
+     * @param map   - map with object positions already scaled.
+     * @param scale - scale of the map, the collision boxes of the object types
+     *              are in unscaled sprite coordinates.
+     */
+    public ColliderIndex(MapData map, int scale) {
+        this.columns = Math.max(1, (map.getWidth() + CELL_SIZE - 1) / CELL_SIZE);
+        this.rows = Math.max(1, (map.getHeight() + CELL_SIZE - 1) / CELL_SIZE);
+
+        int total = 0;
+        for (ObjectData object : map.getGameObjects()) {
+            if (isSolid(object.getObjectType())) {
+                total++;
+            }
+        }
+        this.count = total;
+        this.minX = new int[total];
+        this.minY = new int[total];
+        this.maxX = new int[total];
+        this.maxY = new int[total];
+        int i = 0;
+        for (ObjectData object : map.getGameObjects()) {
+            ObjectType type = object.getObjectType();
+            if (isSolid(type)) {
+                int[] position = type.getCollisionPos();
+                int[] size = type.getCollisionSize();
+                this.minX[i] = object.getX() + position[0] * scale;
+                this.minY[i] = object.getY() + position[1] * scale;
+                this.maxX[i] = this.minX[i] + size[0] * scale;
+                this.maxY[i] = this.minY[i] + size[1] * scale;
+                i++;
+            }
+        }
+
+        // Every cell lists the boxes touching it, packed one cell after another
+        this.cellStart = new int[this.columns * this.rows + 1];
+        for (i = 0; i < total; i++) {
+            for (int row = getRow(this.minY[i]); row <= getRow(this.maxY[i]); row++) {
+                for (int column = getColumn(this.minX[i]); column <= getColumn(this.maxX[i]); column++) {
+                    this.cellStart[row * this.columns + column + 1]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < this.columns * this.rows; cell++) {
+            this.cellStart[cell + 1] += this.cellStart[cell];
+        }
+        this.cellItems = new int[this.cellStart[this.columns * this.rows]];
+        int[] fill = new int[this.columns * this.rows];
+        for (i = 0; i < total; i++) {
+            for (int row = getRow(this.minY[i]); row <= getRow(this.maxY[i]); row++) {
+                for (int column = getColumn(this.minX[i]); column <= getColumn(this.maxX[i]); column++) {
+                    int cell = row * this.columns + column;
+                    this.cellItems[this.cellStart[cell] + fill[cell]++] = i;
+                }
+            }
+        }
+    }
+
+    /////////////////
+    // Queries
+    ////////////////
+
+    /**
+     * Checks if a rectangle overlaps any obstacle. Touching borders don't count.
+     *
+     * @param x      - X position of the rectangle.
+     * @param y      - Y position of the rectangle.
+     * @param width  - width of the rectangle.
+     * @param height - height of the rectangle.
+     * @return - true if an obstacle is in the way.
+     */
+    public boolean overlaps(int x, int y, int width, int height) {
+        if (this.count == 0) {
+            return false;
+        }
+        int lastRow = getRow(y + height);
+        int lastColumn = getColumn(x + width);
+        for (int row = getRow(y); row <= lastRow; row++) {
+            for (int column = getColumn(x); column <= lastColumn; column++) {
+                int cell = row * this.columns + column;
+                for (int j = this.cellStart[cell]; j < this.cellStart[cell + 1]; j++) {
+                    int i = this.cellItems[j];
+                    if (this.minX[i] < x + width && this.maxX[i] > x && this.minY[i] < y + height && this.maxY[i] > y) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sweeps a square along a segment, and finds the first obstacle on the way.
+     *
+     * @param fromX - X position of the square at the start.
+     * @param fromY - Y position of the square at the start.
+     * @param toX   - X position of the square at the end.
+     * @param toY   - Y position of the square at the end.
+     * @param size  - size of the square.
+     * @return - fraction of the segment travelled before the square hits an
+     *         obstacle, between 0 and 1, or {@code Double.MAX_VALUE} if it hits
+     *         nothing.
+     */
+    public double sweep(int fromX, int fromY, int toX, int toY, int size) {
+        double first = Double.MAX_VALUE;
+        if (this.count == 0) {
+            return first;
+        }
+        int lastRow = getRow(Math.max(fromY, toY) + size);
+        int lastColumn = getColumn(Math.max(fromX, toX) + size);
+        for (int row = getRow(Math.min(fromY, toY)); row <= lastRow; row++) {
+            for (int column = getColumn(Math.min(fromX, toX)); column <= lastColumn; column++) {
+                int cell = row * this.columns + column;
+                for (int j = this.cellStart[cell]; j < this.cellStart[cell + 1]; j++) {
+                    int i = this.cellItems[j];
+                    first = Math.min(first, clip(fromX, fromY, toX, toY, this.minX[i] - size, this.minY[i] - size, this.maxX[i], this.maxY[i]));
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Gets the number of obstacles in the index.
+     *
+     * @return - obstacle count.
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Clips a segment against the inside of a box, one axis at a time. Points on
+     * the border of the box are outside.
+     *
+     * @param fromX - X position of the segment start.
+     * @param fromY - Y position of the segment start.
+     * @param toX   - X position of the segment end.
+     * @param toY   - Y position of the segment end.
+     * @param minX  - left border of the box.
+     * @param minY  - top border of the box.
+     * @param maxX  - right border of the box.
+     * @param maxY  - bottom border of the box.
+     * @return - fraction of the segment before it enters the box, between 0 and 1,
+     *         or {@code Double.MAX_VALUE} if it never does.
+     */
+    public static double clip(int fromX, int fromY, int toX, int toY, int minX, int minY, int maxX, int maxY) {
+        double entry = 0, exit = 1;
+
+        int deltaX = toX - fromX;
+        if (deltaX == 0) {
+            if (fromX <= minX || fromX >= maxX) {
+                return Double.MAX_VALUE;
+            }
+        } else {
+            double t1 = (double) (minX - fromX) / deltaX;
+            double t2 = (double) (maxX - fromX) / deltaX;
+            entry = Math.max(entry, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+
+        int deltaY = toY - fromY;
+        if (deltaY == 0) {
+            if (fromY <= minY || fromY >= maxY) {
+                return Double.MAX_VALUE;
+            }
+        } else {
+            double t1 = (double) (minY - fromY) / deltaY;
+            double t2 = (double) (maxY - fromY) / deltaY;
+            entry = Math.max(entry, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+
+        return entry < exit ? entry : Double.MAX_VALUE;
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    private static boolean isSolid(ObjectType type) {
+        int[] size = type.getCollisionSize();
+        return size[0] > 0 && size[1] > 0;
+    }
+
+    private int getColumn(int x) {
+        return Math.max(0, Math.min(this.columns - 1, x / CELL_SIZE));
+    }
+
+    private int getRow(int y) {
+        return Math.max(0, Math.min(this.rows - 1, y / CELL_SIZE));
+    }
+
+}
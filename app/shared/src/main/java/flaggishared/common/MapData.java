@@ -290,7 +290,7 @@ public class MapData {
     @JsonDeserialize(using = ObjectTypeDeserializer.class)
     public enum ObjectType {
 
-        TREE("tree", 0, 0, 0, 0), //
+        TREE("tree", 70, 110, 30, 24), // Trunk only, the crown is walkable
         RED_FLAG("red_flag", 0, 0, 0, 0), //
         BLUE_FLAG("blue_flag", 0, 0, 0, 0); //
 
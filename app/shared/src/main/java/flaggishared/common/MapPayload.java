@@ -0,0 +1,159 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package flaggishared.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A map serialized into compressed JSON bytes, identified by a hash of its
+ * content. The server serializes every map once, and clients cache the bytes
+ * by the hash, so map data is only transferred when a client doesn't have it.
+ *
+ */
+public class MapPayload {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    private static final int MAX_JSON_SIZE = 16 << 20; // Guards against decompression bombs
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final MapData map;
+    private final byte[] data;
+    private final String hash;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Serializes and compresses a map.
+     *
+     * @param map - map data.
+     * @throws IOException if the map can't be serialized.
+     */
+    public MapPayload(MapData map) throws IOException {
+        this.map = map;
+        this.data = compress(PersistentValue.toJson(map).getBytes(StandardCharsets.UTF_8));
+        this.hash = hash(this.data);
+    }
+
+    /////////////////
+    // Accesors
+    ////////////////
+
+    public MapData getMap() {
+        return this.map;
+    }
+
+    /**
+     * Returns the compressed JSON. Must not be modified.
+     *
+     * @return - compressed bytes.
+     */
+    public byte[] getData() {
+        return this.data;
+    }
+
+    public String getHash() {
+        return this.hash;
+    }
+
+    /////////////////
+    // Static
+    ////////////////
+
+    /**
+     * Computes the content hash of compressed map bytes.
+     *
+     * @param data - compressed bytes.
+     * @return - lowercase hexadecimal hash.
+     */
+    public static String hash(byte[] data) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is required to be supported by every JVM.", e);
+        }
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Decompresses and parses compressed map bytes.
+     *
+     * @param data - compressed bytes.
+     * @return - parsed map, or {@code null} if the data is not a valid map.
+     */
+    public static MapData decode(byte[] data) {
+        ByteArrayOutputStream json = new ByteArrayOutputStream(data.length * 4);
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = in.read(chunk)) >= 0) {
+                json.write(chunk, 0, read);
+                if (json.size() > MAX_JSON_SIZE) {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return PersistentValue.fromJson(new String(json.toByteArray(), StandardCharsets.UTF_8), MapData.class);
+    }
+
+    private static byte[] compress(byte[] json) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 2);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+            out.write(json);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+}
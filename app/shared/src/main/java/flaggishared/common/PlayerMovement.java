@@ -0,0 +1,194 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggishared.common;
+
+import flaggishared.network.PlayerState.Animation;
+
+/**
+ * Player movement rules. Used by the server to simulate players from their
+ * input, and by the client to move the local player without waiting for the
+ * server, so both must produce the same result for the same input.
+ *
+ */
+public final class PlayerMovement {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    public static final int BUTTON_UP = 1;
+    public static final int BUTTON_DOWN = 2;
+    public static final int BUTTON_LEFT = 4;
+    public static final int BUTTON_RIGHT = 8;
+    public static final int SPEED = 10; // Distance per input step
+    public static final int HITBOX_OFFSET_X = 7;
+    public static final int HITBOX_OFFSET_Y = 7;
+    public static final int HITBOX_WIDTH = 53;
+    public static final int HITBOX_HEIGHT = 93;
+
+    // Private constructor to prevent instantiation
+    private PlayerMovement() {
+        throw new UnsupportedOperationException("PlayerMovement is a utility class and cannot be instantiated.");
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Moves a position by a single input step. Diagonal movement is normalized, and
+     * an axis is not moved if the step would leave the map.
+     *
+     * @param position - position to modify [x, y].
+     * @param buttons  - held buttons.
+     * @param maxX     - largest allowed X coordinate.
+     * @param maxY     - largest allowed Y coordinate.
+     */
+    public static void move(int[] position, int buttons, int maxX, int maxY) {
+        double deltaX = 0;
+        double deltaY = 0;
+
+        if (isPressed(buttons, BUTTON_UP))
+            deltaY -= 1;
+        if (isPressed(buttons, BUTTON_DOWN))
+            deltaY += 1;
+        if (isPressed(buttons, BUTTON_LEFT))
+            deltaX -= 1;
+        if (isPressed(buttons, BUTTON_RIGHT))
+            deltaX += 1;
+
+        // Normalize the movement direction
+        double magnitude = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        if (magnitude > 0) {
+            deltaX = (deltaX / magnitude) * SPEED;
+            deltaY = (deltaY / magnitude) * SPEED;
+        }
+
+        // Validate new position
+        double tempX = position[0] + deltaX;
+        double tempY = position[1] + deltaY;
+        if (tempX < 0 || tempX > maxX) {
+            deltaX = 0;
+        }
+        if (tempY < 0 || tempY > maxY) {
+            deltaY = 0;
+        }
+
+        position[0] += deltaX;
+        position[1] += deltaY;
+    }
+
+    /**
+     * Moves a position by a single input step, and doesn't let the player hitbox
+     * into obstacles. If the step would end in an obstacle, the player slides
+     * along it on a single axis, or doesn't move at all. A player already stuck
+     * in an obstacle can move freely, so it can get out.
+     *
+     * @param position  - position to modify [x, y].
+     * @param buttons   - held buttons.
+     * @param maxX      - largest allowed X coordinate.
+     * @param maxY      - largest allowed Y coordinate.
+     * @param obstacles - static obstacles of the map.
+     */
+    public static void move(int[] position, int buttons, int maxX, int maxY, ColliderIndex obstacles) {
+        int startX = position[0];
+        int startY = position[1];
+        move(position, buttons, maxX, maxY);
+        if (!collides(obstacles, position[0], position[1]) || collides(obstacles, startX, startY)) {
+            return;
+        }
+        if (!collides(obstacles, position[0], startY)) {
+            position[1] = startY;
+        } else if (!collides(obstacles, startX, position[1])) {
+            position[0] = startX;
+        } else {
+            position[0] = startX;
+            position[1] = startY;
+        }
+    }
+
+    /**
+     * Checks if the hitbox of a player at a position overlaps an obstacle.
+     *
+     * @param obstacles - static obstacles of the map.
+     * @param x         - X position of the player.
+     * @param y         - Y position of the player.
+     * @return - true if the player is in an obstacle.
+     */
+    public static boolean collides(ColliderIndex obstacles, int x, int y) {
+        return obstacles.overlaps(x + HITBOX_OFFSET_X, y + HITBOX_OFFSET_Y, HITBOX_WIDTH, HITBOX_HEIGHT);
+    }
+
+    /**
+     * Gets the walking animation matching the held buttons.
+     *
+     * @param buttons - held buttons.
+     * @return - avatar animation.
+     */
+    public static Animation getAnimation(int buttons) {
+        boolean up = isPressed(buttons, BUTTON_UP), down = isPressed(buttons, BUTTON_DOWN);
+        boolean left = isPressed(buttons, BUTTON_LEFT), right = isPressed(buttons, BUTTON_RIGHT);
+
+        if (up && (left || right)) {
+            return Animation.WALK_DIAGUP;
+        } else if (down && (left || right)) {
+            return Animation.WALK_SIDE;
+        } else if (up) {
+            return Animation.WALK_UP;
+        } else if (down) {
+            return Animation.WALK_DOWN;
+        } else if (left || right) {
+            return Animation.WALK_SIDE;
+        }
+        return Animation.IDLE;
+    }
+
+    /**
+     * Gets the direction the avatar faces after an input step.
+     *
+     * @param buttons - held buttons.
+     * @param current - current direction.
+     * @return - true if the avatar faces right.
+     */
+    public static boolean isFacingRight(int buttons, boolean current) {
+        if (isPressed(buttons, BUTTON_RIGHT)) {
+            return true;
+        } else if (isPressed(buttons, BUTTON_LEFT)) {
+            return false;
+        }
+        return current;
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    private static boolean isPressed(int buttons, int button) {
+        return (buttons & button) != 0;
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggishared.network;
+
+/**
+ * Mutable creation data of a bullet, as transferred through UDP. Instances are
+ * meant to be reused between packets. The age allows creating a bullet that is
+ * already flying, at its current position.
+ *
+ */
+public class BulletSpawn {
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    public int ownerId, bulletNum, initialX, initialY, targetX, targetY, decayTime, velocity, age;
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Sets all values of the spawn data.
+     *
+     * @param ownerId   - ID of the player who created the bullet.
+     * @param bulletNum - bullet number, unique for the owner.
+     * @param initialX  - initial X position.
+     * @param initialY  - initial Y position.
+     * @param targetX   - X position of the target.
+     * @param targetY   - Y position of the target.
+     * @param decayTime - time (in ms) after which the bullet disappears.
+     * @param velocity  - velocity in points per second.
+     * @param age       - time (in ms) since the bullet was created.
+     */
+    public void set(int ownerId, int bulletNum, int initialX, int initialY, int targetX, int targetY, int decayTime, int velocity, int age) {
+        this.ownerId = ownerId;
+        this.bulletNum = bulletNum;
+        this.initialX = initialX;
+        this.initialY = initialY;
+        this.targetX = targetX;
+        this.targetY = targetY;
+        this.decayTime = decayTime;
+        this.velocity = velocity;
+        this.age = age;
+    }
+
+    /**
+     * Copies all values of another spawn into this one.
+     *
+     * @param other - source spawn data.
+     */
+    public void copyFrom(BulletSpawn other) {
+        set(other.ownerId, other.bulletNum, other.initialX, other.initialY, other.targetX, other.targetY, other.decayTime, other.velocity, other.age);
+    }
+
+    /**
+     * Calculates the X position of the bullet at its age.
+     *
+     * @return - current X position.
+     */
+    public int getCurrentX() {
+        return this.initialX + (int) (getDirection(this.targetX - this.initialX) * getTravelledDistance());
+    }
+
+    /**
+     * Calculates the Y position of the bullet at its age.
+     *
+     * @return - current Y position.
+     */
+    public int getCurrentY() {
+        return this.initialY + (int) (getDirection(this.targetY - this.initialY) * getTravelledDistance());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BulletSpawn{owner=%d, num=%d, from=[%d, %d], to=[%d, %d], decay=%d, velocity=%d, age=%d}", ownerId, bulletNum, initialX, initialY, targetX, targetY, decayTime, velocity, age);
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    private double getDirection(int delta) {
+        double dx = this.targetX - this.initialX;
+        double dy = this.targetY - this.initialY;
+        double magnitude = Math.sqrt(dx * dx + dy * dy);
+        return magnitude == 0 ? 0 : delta / magnitude;
+    }
+
+    private double getTravelledDistance() {
+        return this.age / 1000.0 * this.velocity;
+    }
+
+}
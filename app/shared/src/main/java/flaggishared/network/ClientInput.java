@@ -0,0 +1,122 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggishared.network;
+
+import java.util.Arrays;
+
+/**
+ * Reusable container for the data a client sends every frame: the buttons it
+ * holds, numbered by a sequence number, and the bullets it fired since the last
+ * packet. Clients send input only, the server simulates the player. The input
+ * also acknowledges the last snapshot the client received, and the bullet
+ * events it applied.
+ *
+ */
+public class ClientInput {
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    public int playerId, sequence, buttons, ackTick, eventAck;
+    private BulletSpawn[] bullets;
+    private int bulletCount;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Empty constructor.
+     *
+     */
+    public ClientInput() {
+        this.playerId = -1;
+        this.bullets = new BulletSpawn[4];
+        this.bulletCount = 0;
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Removes all bullets. The buttons and sequence number are kept.
+     *
+     */
+    public void clearBullets() {
+        this.bulletCount = 0;
+    }
+
+    /**
+     * Appends a bullet and returns its reusable spawn data to be filled in.
+     *
+     * @return - spawn data of the new bullet.
+     */
+    public BulletSpawn addBullet() {
+        if (this.bulletCount == this.bullets.length) {
+            this.bullets = Arrays.copyOf(this.bullets, this.bullets.length * 2);
+        }
+        BulletSpawn spawn = this.bullets[this.bulletCount];
+        if (spawn == null) {
+            spawn = new BulletSpawn();
+            this.bullets[this.bulletCount] = spawn;
+        }
+        this.bulletCount++;
+        return spawn;
+    }
+
+    /**
+     * Copies all the data of another input into this one.
+     *
+     * @param other - source input.
+     */
+    public void copyFrom(ClientInput other) {
+        this.playerId = other.playerId;
+        this.sequence = other.sequence;
+        this.buttons = other.buttons;
+        this.ackTick = other.ackTick;
+        this.eventAck = other.eventAck;
+        clearBullets();
+        for (int i = 0; i < other.bulletCount; i++) {
+            addBullet().copyFrom(other.bullets[i]);
+        }
+    }
+
+    /////////////////
+    // Accesors
+    ////////////////
+
+    public int getBulletCount() {
+        return this.bulletCount;
+    }
+
+    public BulletSpawn getBullet(int index) {
+        return this.bullets[index];
+    }
+
+}
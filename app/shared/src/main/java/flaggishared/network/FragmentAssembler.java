@@ -0,0 +1,129 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggishared.network;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reassembles packets split into fragments by the server. Only the newest
+ * packet is assembled at a time: a fragment of a newer packet drops the
+ * incomplete one, and fragments of older packets are ignored, so a packet is
+ * either delivered whole, or not at all.
+ *
+ */
+public class FragmentAssembler {
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final ByteBuffer packet;
+    private int sequence, count, receivedMask, length;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor.
+     *
+     */
+    public FragmentAssembler() {
+        this.packet = ByteBuffer.allocate(UdpCodec.MAX_SNAPSHOT_SIZE);
+        reset();
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Adds a received fragment. The header of the fragment packet must already be
+     * consumed.
+     *
+     * @param buffer - fragment packet body.
+     * @return - true if the fragment completed a packet, which is then available
+     *         through {@link #getPacket()}.
+     * @throws BufferUnderflowException if the fragment is truncated.
+     */
+    public boolean add(ByteBuffer buffer) {
+        int sequence = VarInt.getVarInt(buffer);
+        int index = buffer.get() & 0xFF;
+        int count = buffer.get() & 0xFF;
+        if (count == 0 || count > UdpCodec.MAX_FRAGMENTS || index >= count || sequence < this.sequence) {
+            return false; // Invalid, or of an older packet
+        }
+        if (sequence != this.sequence || count != this.count) {
+            this.sequence = sequence; // Newer packet, the incomplete one is dropped
+            this.count = count;
+            this.receivedMask = 0;
+            this.length = 0;
+        }
+
+        int bit = 1 << index;
+        boolean last = index == count - 1;
+        if ((this.receivedMask & bit) != 0 || (!last && buffer.remaining() != UdpCodec.FRAGMENT_PAYLOAD_SIZE)) {
+            return false; // Duplicate or malformed
+        }
+        this.packet.clear();
+        this.packet.position(index * UdpCodec.FRAGMENT_PAYLOAD_SIZE);
+        if (last) {
+            this.length = this.packet.position() + buffer.remaining();
+        }
+        this.packet.put(buffer);
+        this.receivedMask |= bit;
+
+        if (this.receivedMask != (count == 32 ? -1 : (1 << count) - 1)) {
+            return false;
+        }
+        this.packet.position(0);
+        this.packet.limit(this.length);
+        return true;
+    }
+
+    /**
+     * Returns the last completed packet.
+     *
+     * @return - packet buffer, valid until the next fragment is added.
+     */
+    public ByteBuffer getPacket() {
+        return this.packet;
+    }
+
+    /**
+     * Drops the packet in progress, and forgets the last sequence number.
+     *
+     */
+    public void reset() {
+        this.sequence = -1;
+        this.count = 0;
+        this.receivedMask = 0;
+        this.length = 0;
+    }
+
+}
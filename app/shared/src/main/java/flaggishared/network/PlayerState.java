@@ -0,0 +1,121 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggishared.network;
+
+/**
+ * Mutable state of a single player, as transferred through UDP. Instances are
+ * meant to be reused between packets.
+ *
+ */
+public class PlayerState {
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    public int id, x, y, health;
+    public Animation animation;
+    public boolean inverted;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Empty constructor. Initializes an idle player with ID -1.
+     *
+     */
+    public PlayerState() {
+        this.id = -1;
+        this.animation = Animation.IDLE;
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Copies all values of another state into this one.
+     *
+     * @param other - source state.
+     */
+    public void copyFrom(PlayerState other) {
+        this.id = other.id;
+        this.x = other.x;
+        this.y = other.y;
+        this.health = other.health;
+        this.animation = other.animation;
+        this.inverted = other.inverted;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PlayerState{id=%d, x=%d, y=%d, health=%d, animation=%s, inverted=%b}", id, x, y, health, animation, inverted);
+    }
+
+    /////////////////
+    // Animation enum
+    ////////////////
+
+    /**
+     * Player avatar animations. The ordinal is the value sent over the network, so
+     * new values must only be appended.
+     *
+     */
+    public enum Animation {
+
+        IDLE("idle"), //
+        WALK_SIDE("walk_side"), //
+        WALK_DIAGUP("walk_diagup"), //
+        WALK_UP("walk_up"), //
+        WALK_DOWN("walk_down");
+
+        private static final Animation[] VALUES = values();
+        private final String name;
+
+        Animation(String name) {
+            this.name = name;
+        }
+
+        // Name used in the sprite animation names
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Returns the animation of a network ID, without allocating a new values
+         * array.
+         *
+         * @param id - ordinal of the animation.
+         * @return - matching animation, or {@code IDLE} if the ID is unknown.
+         */
+        public static Animation fromId(int id) {
+            return id >= 0 && id < VALUES.length ? VALUES[id] : IDLE;
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggishared.network;
+
+import java.util.Arrays;
+
+/**
+ * Reusable container for the game state the server sends to a client: the
+ * visible players, the last input of the client applied by the server, and the
+ * bullet spawn and despawn events the client didn't acknowledge yet. Snapshots
+ * are numbered by the server tick they were taken at. Events are numbered by
+ * consecutive sequence numbers, starting with the first event sequence of the
+ * snapshot.
+ *
+ */
+public class Snapshot {
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private PlayerState[] players;
+    private BulletSpawn[] events;
+    private boolean[] despawn;
+    private int tick, inputAck, playerCount, eventCount, firstEventSequence, resyncSequence;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Empty constructor.
+     *
+     */
+    public Snapshot() {
+        this.players = new PlayerState[8];
+        this.events = new BulletSpawn[8];
+        this.despawn = new boolean[8];
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Removes all data, keeping the allocated structures for reuse.
+     *
+     */
+    public void clear() {
+        this.tick = 0;
+        this.inputAck = -1;
+        this.playerCount = 0;
+        this.eventCount = 0;
+        this.firstEventSequence = 0;
+        this.resyncSequence = 0;
+    }
+
+    /**
+     * Copies the tick and the players of another snapshot into this one. Events
+     * are not copied, as they only belong to the snapshot they were sent in.
+     *
+     * @param other - source snapshot.
+     */
+    public void copyFrom(Snapshot other) {
+        clear();
+        this.tick = other.tick;
+        for (int i = 0; i < other.playerCount; i++) {
+            addPlayer().copyFrom(other.players[i]);
+        }
+    }
+
+    /**
+     * Appends a player and returns its reusable state to be filled in.
+     *
+     * @return - state of the new player.
+     */
+    public PlayerState addPlayer() {
+        if (this.playerCount == this.players.length) {
+            this.players = Arrays.copyOf(this.players, this.players.length * 2);
+        }
+        PlayerState state = this.players[this.playerCount];
+        if (state == null) {
+            state = new PlayerState();
+            this.players[this.playerCount] = state;
+        }
+        this.playerCount++;
+        return state;
+    }
+
+    /**
+     * Finds a player by its ID.
+     *
+     * @param id - player ID.
+     * @return - the player state, or {@code null} if the player isn't present.
+     */
+    public PlayerState findPlayer(int id) {
+        for (int i = 0; i < this.playerCount; i++) {
+            if (this.players[i].id == id) {
+                return this.players[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes a player by its ID. The order of the other players is not kept.
+     *
+     * @param id - player ID.
+     */
+    public void removePlayer(int id) {
+        for (int i = 0; i < this.playerCount; i++) {
+            if (this.players[i].id == id) {
+                PlayerState removed = this.players[i];
+                this.players[i] = this.players[--this.playerCount];
+                this.players[this.playerCount] = removed; // Keep the instance for reuse
+                return;
+            }
+        }
+    }
+
+    /**
+     * Appends a spawn event and returns its reusable bullet data to be filled in.
+     *
+     * @return - data of the spawned bullet.
+     */
+    public BulletSpawn addSpawnEvent() {
+        return addEvent(false);
+    }
+
+    /**
+     * Appends a despawn event.
+     *
+     * @param ownerId   - ID of the owning player.
+     * @param bulletNum - bullet number.
+     */
+    public void addDespawnEvent(int ownerId, int bulletNum) {
+        BulletSpawn event = addEvent(true);
+        event.ownerId = ownerId;
+        event.bulletNum = bulletNum;
+    }
+
+    /**
+     * Combines a bullet owner and number into a single key.
+     *
+     * @param ownerId   - ID of the owning player.
+     * @param bulletNum - bullet number.
+     * @return - bullet key.
+     */
+    public static long toBulletKey(int ownerId, int bulletNum) {
+        return ((long) ownerId << 32) | (bulletNum & 0xFFFFFFFFL);
+    }
+
+    /////////////////
+    // Accesors
+    ////////////////
+
+    public int getTick() {
+        return this.tick;
+    }
+
+    public void setTick(int tick) {
+        this.tick = tick;
+    }
+
+    /**
+     * Gets the sequence number of the last input of the client applied to its
+     * player in this snapshot.
+     *
+     * @return - input sequence number, -1 if none was applied yet.
+     */
+    public int getInputAck() {
+        return this.inputAck;
+    }
+
+    public void setInputAck(int sequence) {
+        this.inputAck = sequence;
+    }
+
+    public int getPlayerCount() {
+        return this.playerCount;
+    }
+
+    public PlayerState getPlayer(int index) {
+        return this.players[index];
+    }
+
+    public int getFirstEventSequence() {
+        return this.firstEventSequence;
+    }
+
+    public void setFirstEventSequence(int sequence) {
+        this.firstEventSequence = sequence;
+    }
+
+    /**
+     * Gets the sequence number the last resync of the events started at. The
+     * server resent the spawns of all live bullets from there, so bullets the
+     * client had before are dropped.
+     *
+     * @return - event sequence number of the resync.
+     */
+    public int getResyncSequence() {
+        return this.resyncSequence;
+    }
+
+    public void setResyncSequence(int sequence) {
+        this.resyncSequence = sequence;
+    }
+
+    public int getEventCount() {
+        return this.eventCount;
+    }
+
+    /**
+     * Gets the bullet of an event. Despawn events only have the owner and the
+     * bullet number set.
+     *
+     * @param index - event index.
+     * @return - bullet data.
+     */
+    public BulletSpawn getEvent(int index) {
+        return this.events[index];
+    }
+
+    public boolean isDespawnEvent(int index) {
+        return this.despawn[index];
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    private BulletSpawn addEvent(boolean isDespawn) {
+        if (this.eventCount == this.events.length) {
+            this.events = Arrays.copyOf(this.events, this.events.length * 2);
+            this.despawn = Arrays.copyOf(this.despawn, this.despawn.length * 2);
+        }
+        BulletSpawn event = this.events[this.eventCount];
+        if (event == null) {
+            event = new BulletSpawn();
+            this.events[this.eventCount] = event;
+        }
+        this.despawn[this.eventCount++] = isDespawn;
+        return event;
+    }
+
+}
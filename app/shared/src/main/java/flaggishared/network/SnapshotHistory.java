@@ -0,0 +1,106 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggishared.network;
+
+/**
+ * Fixed size history of the most recent snapshots, used as baselines for delta
+ * compression. The server keeps one per client, of the snapshots sent to it,
+ * and the client keeps one of the snapshots it received. When full, the oldest
+ * snapshot is overwritten.
+ *
+ */
+public class SnapshotHistory {
+
+    /////////////////
+    // Variables
+    ////////////////
+
+    private final Snapshot[] snapshots;
+    private int next;
+
+    /////////////////
+    // Constructor
+    ////////////////
+
+    /**
+     * Default constructor.
+     *
+     * @param size - number of snapshots kept.
+     */
+    public SnapshotHistory(int size) {
+        this.snapshots = new Snapshot[size];
+        for (int i = 0; i < size; i++) {
+            this.snapshots[i] = new Snapshot();
+        }
+    }
+
+    /////////////////
+    // Public methods
+    ////////////////
+
+    /**
+     * Takes the slot of the oldest snapshot. The returned snapshot is cleared, and
+     * is meant to be filled in by the caller.
+     *
+     * @return - reusable snapshot.
+     */
+    public Snapshot add() {
+        Snapshot snapshot = this.snapshots[this.next];
+        this.next = (this.next + 1) % this.snapshots.length;
+        snapshot.clear();
+        return snapshot;
+    }
+
+    /**
+     * Finds a snapshot by its tick.
+     *
+     * @param tick - snapshot tick. Tick 0 is never stored.
+     * @return - the snapshot, or {@code null} if it's not in the history anymore.
+     */
+    public Snapshot get(int tick) {
+        if (tick == 0) {
+            return null;
+        }
+        for (Snapshot snapshot : this.snapshots) {
+            if (snapshot.getTick() == tick) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes all snapshots.
+     *
+     */
+    public void clear() {
+        for (Snapshot snapshot : this.snapshots) {
+            snapshot.clear();
+        }
+    }
+
+}
@@ -0,0 +1,401 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package flaggishared.network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary codec of the TCP control messages exchanged between the client and
+ * the server. Every message is a frame with a length prefix, followed by a
+ * numeric opcode and a fixed field layout. Both sides dispatch the frames by
+ * indexing a handler table with the opcode. Requests are sent by the client,
+ * responses by the server, and the two never share an opcode.
+ *
+ * <pre>
+ * frame:          length (int, opcode and body), opcode (byte), body
+ * string:         byte length (int), UTF-8 bytes
+ * bytes:          length (int), raw bytes
+ *
+ * PING:           no body, first message of a server check connection
+ * NEW_CLIENT:     skin, name, first message of a client connection
+ * DISCONNECT:     no body
+ * GET_IDLE:       no body
+ * GO_IDLE:        no body
+ * INVITE_PLAYER:  client ID
+ * ACCEPT_INVITE:  client ID, only logged, the match starts on INVITE_PLAYER
+ * DECLINE_INVITE: client ID, only logged
+ * VIEW_SIZE:      width, height, interpolation delay in ms
+ * GET_MAP:        map hash (string)
+ *
+ * PONG:           no body
+ * WELCOME:        client ID, UDP port, tick rate
+ * IDLE_CLIENTS:   count, (client ID, name)*
+ * ENTER_GAME:     first spawnpoint (boolean), map hash (string)
+ * PLAYER_INFO:    client ID, skin, name
+ * PLAYER_DIED:    respawn x, y
+ * WENT_IDLE:      no body
+ * FLAG_GRABBED:   no body, the local player picked up the enemy flag
+ * MAP_DATA:       map hash (string), compressed map JSON (bytes)
+ * FLAG_DROPPED:   no body, the local player lost the flag it carried
+ * FLAG_CAPTURED:  capturing client ID, blue score, red score
+ * </pre>
+ *
+ */
+public final class TcpCodec {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    public static final int HEADER_SIZE = Integer.BYTES + 1;
+    public static final int MAX_FRAME_SIZE = 1 << 20; // Map data is the largest message
+    public static final int MAX_REQUEST_SIZE = 4096; // Requests only carry short strings
+    public static final int OPCODE_COUNT = 32;
+
+    // Requests
+    public static final byte OP_PING = 1;
+    public static final byte OP_NEW_CLIENT = 2;
+    public static final byte OP_DISCONNECT = 3;
+    public static final byte OP_GET_IDLE = 4;
+    public static final byte OP_GO_IDLE = 5;
+    public static final byte OP_INVITE_PLAYER = 6;
+    public static final byte OP_ACCEPT_INVITE = 7;
+    public static final byte OP_DECLINE_INVITE = 8;
+    public static final byte OP_VIEW_SIZE = 9;
+    public static final byte OP_GET_MAP = 10;
+
+    // Responses
+    public static final byte OP_PONG = 16;
+    public static final byte OP_WELCOME = 17;
+    public static final byte OP_IDLE_CLIENTS = 18;
+    public static final byte OP_ENTER_GAME = 19;
+    public static final byte OP_PLAYER_INFO = 20;
+    public static final byte OP_PLAYER_DIED = 21;
+    public static final byte OP_WENT_IDLE = 22;
+    public static final byte OP_FLAG_GRABBED = 23;
+    public static final byte OP_MAP_DATA = 24;
+    public static final byte OP_FLAG_DROPPED = 25;
+    public static final byte OP_FLAG_CAPTURED = 26;
+
+    // Private constructor to prevent instantiation
+    private TcpCodec() {
+        throw new UnsupportedOperationException("TcpCodec is a utility class and cannot be instantiated.");
+    }
+
+    /////////////////
+    // Requests
+    ////////////////
+
+    /**
+     * Encodes a new client request.
+     *
+     * @param skinName   - skin of the client.
+     * @param clientName - display name of the client.
+     * @return - encoded frame.
+     */
+    public static ByteBuffer encodeNewClient(String skinName, String clientName) {
+        return new FrameBuilder(OP_NEW_CLIENT).putString(skinName).putString(clientName).build();
+    }
+
+    /**
+     * Encodes an invite request.
+     *
+     * @param clientId - ID of the invited client.
+     * @return - encoded frame.
+     */
+    public static ByteBuffer encodeInvitePlayer(int clientId) {
+        return new FrameBuilder(OP_INVITE_PLAYER).putInt(clientId).build();
+    }
+
+    /**
+     * Encodes an answer to an invite.
+     *
+     * @param clientId - ID of the inviting client.
+     * @param accept   - {@code true} if the invite is accepted.
+     * @return - encoded frame.
+     */
+    public static ByteBuffer encodeInviteAnswer(int clientId, boolean accept) {
+        return new FrameBuilder(accept ? OP_ACCEPT_INVITE : OP_DECLINE_INVITE).putInt(clientId).build();
+    }
+
+    /**
+     * Encodes the size of the client game view, and how far in the past it shows
+     * the other players.
+     *
+     * @param width              - view width.
+     * @param height             - view height.
+     * @param interpolationDelay - delay of the other players in ms.
+     * @return - encoded frame.
+     */
+    public static ByteBuffer encodeViewSize(int width, int height, int interpolationDelay) {
+        return new FrameBuilder(OP_VIEW_SIZE).putInt(width).putInt(height).putInt(interpolationDelay).build();
+    }
+
+    /**
+     * Encodes a request for the data of a map the client doesn't have cached.
+     *
+     * @param mapHash - content hash of the map.
+     * @return - encoded frame.
+     */
+    public static ByteBuffer encodeGetMap(String mapHash) {
+        return new FrameBuilder(OP_GET_MAP).putString(mapHash).build();
+    }
+
+    /////////////////
+    // Responses
+    ////////////////
+
+    /**
+     * Encodes the response to a new client request.
+     *
+     * @param clientId - assigned client ID.
+     * @param udpPort  - UDP port of the server.
+     * @param tickRate - server ticks per second, the snapshot ticks are counted in.
+     * @return - encoded frame.
+     */
+    public static ByteBuffer encodeWelcome(int clientId, int udpPort, int tickRate) {
+        return new FrameBuilder(OP_WELCOME).putInt(clientId).putInt(udpPort).putInt(tickRate).build();
+    }
+
+    /**
+     * Encodes the list of clients that can be invited.
+     *
+     * @param ids   - client IDs.
+     * @param names - display names, in the order of the IDs.
+     * @param count - number of clients.
+     * @return - encoded frame.
+     */
+    public static ByteBuffer encodeIdleClients(int[] ids, String[] names, int count) {
+        FrameBuilder frame = new FrameBuilder(OP_IDLE_CLIENTS).putInt(count);
+        for (int i = 0; i < count; i++) {
+            frame.putInt(ids[i]).putString(names[i]);
+        }
+        return frame.build();
+    }
+
+    /**
+     * Encodes the message starting a game.
+     *
+     * @param mapHash - content hash of the map.
+     * @param first   - {@code true} if the client spawns at the first spawnpoint.
+     * @return - encoded frame.
+     */
+    public static ByteBuffer encodeEnterGame(String mapHash, boolean first) {
+        return new FrameBuilder(OP_ENTER_GAME).putBoolean(first).putString(mapHash).build();
+    }
+
+    /**
+     * Encodes the data of a map.
+     *
+     * @param mapHash - content hash of the map.
+     * @param data    - compressed map JSON.
+     * @return - encoded frame.
+     */
+    public static ByteBuffer encodeMapData(String mapHash, byte[] data) {
+        return new FrameBuilder(OP_MAP_DATA).putString(mapHash).putBytes(data).build();
+    }
+
+    /**
+     * Encodes the display data of a player.
+     *
+     * @param clientId   - client ID of the player.
+     * @param skinName   - skin of the player.
+     * @param clientName - display name of the player.
+     * @return - encoded frame.
+     */
+    public static ByteBuffer encodePlayerInfo(int clientId, String skinName, String clientName) {
+        return new FrameBuilder(OP_PLAYER_INFO).putInt(clientId).putString(skinName).putString(clientName).build();
+    }
+
+    /**
+     * Encodes the death of the local player.
+     *
+     * @param x - respawn x position.
+     * @param y - respawn y position.
+     * @return - encoded frame.
+     */
+    public static ByteBuffer encodePlayerDied(int x, int y) {
+        return new FrameBuilder(OP_PLAYER_DIED).putInt(x).putInt(y).build();
+    }
+
+    /**
+     * Encodes a flag capture, sent to every player of the game.
+     *
+     * @param clientId  - ID of the capturing client.
+     * @param blueScore - captures of the blue team.
+     * @param redScore  - captures of the red team.
+     * @return - encoded frame.
+     */
+    public static ByteBuffer encodeFlagCaptured(int clientId, int blueScore, int redScore) {
+        return new FrameBuilder(OP_FLAG_CAPTURED).putInt(clientId).putInt(blueScore).putInt(redScore).build();
+    }
+
+    /////////////////
+    // Common
+    ////////////////
+
+    /**
+     * Encodes a message without a body.
+     *
+     * @param opcode - message opcode.
+     * @return - encoded frame.
+     */
+    public static ByteBuffer encode(byte opcode) {
+        return new FrameBuilder(opcode).build();
+    }
+
+    /**
+     * Reads the length of the next frame, if its header is fully buffered. Nothing
+     * is consumed from the buffer.
+     *
+     * @param buffer  - source buffer, positioned at the start of the frame.
+     * @param maxSize - largest allowed frame length.
+     * @return - length of the opcode and body, or -1 if the header isn't buffered
+     *         yet.
+     * @throws IllegalArgumentException if the length is out of range.
+     */
+    public static int peekFrameLength(ByteBuffer buffer, int maxSize) {
+        if (buffer.remaining() < Integer.BYTES) {
+            return -1;
+        }
+        int length = buffer.getInt(buffer.position());
+        if (length < 1 || length > maxSize) {
+            throw new IllegalArgumentException("Invalid frame length: " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Reads a string field.
+     *
+     * @param buffer - source buffer.
+     * @return - decoded string.
+     * @throws BufferUnderflowException if the frame is truncated.
+     */
+    public static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Reads a bytes field.
+     *
+     * @param buffer - source buffer.
+     * @return - decoded bytes.
+     * @throws BufferUnderflowException if the frame is truncated.
+     */
+    public static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+
+    /**
+     * Reads a boolean field.
+     *
+     * @param buffer - source buffer.
+     * @return - decoded value.
+     */
+    public static boolean getBoolean(ByteBuffer buffer) {
+        return buffer.get() != 0;
+    }
+
+    /////////////////
+    // Frame builder
+    ////////////////
+
+    /**
+     * Writes the fields of a single frame, and patches the length prefix once the
+     * body is complete.
+     *
+     */
+    private static final class FrameBuilder {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        FrameBuilder(byte opcode) {
+            try {
+                this.out.writeInt(0); // Patched in build()
+                this.out.writeByte(opcode);
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // Never thrown by an in-memory stream
+            }
+        }
+
+        FrameBuilder putInt(int value) {
+            try {
+                this.out.writeInt(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return this;
+        }
+
+        FrameBuilder putBoolean(boolean value) {
+            try {
+                this.out.writeBoolean(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return this;
+        }
+
+        FrameBuilder putString(String value) {
+            return putBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        FrameBuilder putBytes(byte[] value) {
+            putInt(value.length);
+            this.bytes.write(value, 0, value.length);
+            return this;
+        }
+
+        ByteBuffer build() {
+            ByteBuffer frame = ByteBuffer.wrap(this.bytes.toByteArray());
+            frame.putInt(0, frame.capacity() - Integer.BYTES);
+            return frame;
+        }
+
+    }
+
+}
@@ -0,0 +1,439 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggishared.network;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary codec of the UDP packets exchanged between the client and the server.
+ * Every packet starts with a protocol version byte and a packet type byte,
+ * followed by a fixed field layout using variable length integers. No strings
+ * are sent, display names are exchanged through TCP when joining a game.
+ * <p>
+ * Snapshots are delta compressed against a baseline, the last snapshot the
+ * client acknowledged. Only players with changed fields and removed players
+ * are sent. A snapshot with baseline tick 0 is a full snapshot, encoded as a
+ * delta against an empty one. Every snapshot also carries the sequence number
+ * of the last input of the client the server applied, so the client can replay
+ * its newer inputs on top of the server state.
+ * <p>
+ * Bullets aren't part of the delta compressed state. Snapshots carry the bullet
+ * spawn and despawn events the client didn't acknowledge yet, with the
+ * sequence number of the first one. Spawns hold the full creation data and the
+ * current age, so a client can create bullets mid-flight. Clients acknowledge
+ * the sequence number of the first event they didn't apply yet.
+ * <p>
+ * Datagrams never exceed {@link #MAX_PACKET_SIZE}, so they aren't fragmented by
+ * IP. Larger snapshots are split into fragment packets, each carrying a slice
+ * of the encoded snapshot packet, and reassembled by a
+ * {@link FragmentAssembler}. The snapshot tick is used as the fragment
+ * sequence number.
+ *
+ * <pre>
+ * CLIENT_INPUT: id, sequence, ack tick, event ack, buttons (byte),
+ *               bullet count, bullets (without the owner)
+ * SNAPSHOT:     tick, baseline tick, input ack (signed),
+ *               changed player count, (id, player)*,
+ *               removed player count, id*,
+ *               resync sequence, first event sequence, event count,
+ *               event*
+ * IDLE:         no body
+ * FRAGMENT:     sequence, fragment index (byte), fragment count (byte),
+ *               slice of the encoded packet
+ * event:        type (byte), owner, bullet for a spawn, num for a despawn
+ * bullet:       num, initial x, y, target x, y, decay time, velocity, age
+ * player:       field mask (byte), x, y, health (signed), animation (byte),
+ *               only the fields present in the mask
+ * </pre>
+ *
+ */
+public final class UdpCodec {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    public static final byte PROTOCOL_VERSION = 8;
+    public static final byte TYPE_CLIENT_INPUT = 1;
+    public static final byte TYPE_SNAPSHOT = 2;
+    public static final byte TYPE_IDLE = 3;
+    public static final byte TYPE_FRAGMENT = 4;
+    public static final byte EVENT_SPAWN = 1;
+    public static final byte EVENT_DESPAWN = 2;
+    public static final int MAX_PACKET_SIZE = 1400; // Fits into the usual 1500 byte MTU with the IP and UDP headers
+    public static final int MAX_FRAGMENTS = 32;
+    public static final int FRAGMENT_PAYLOAD_SIZE = MAX_PACKET_SIZE - (2 + VarInt.MAX_BYTES + 2);
+    public static final int MAX_SNAPSHOT_SIZE = MAX_FRAGMENTS * FRAGMENT_PAYLOAD_SIZE;
+
+    private static final int FIELD_X = 1;
+    private static final int FIELD_Y = 2;
+    private static final int FIELD_HEALTH = 4;
+    private static final int FIELD_ANIMATION = 8;
+    private static final int FIELD_INVERTED = 16; // Value of the flag, not a change marker
+    private static final int FIELDS_ALL = FIELD_X | FIELD_Y | FIELD_HEALTH | FIELD_ANIMATION;
+
+    // Private constructor to prevent instantiation
+    private UdpCodec() {
+        throw new UnsupportedOperationException("UdpCodec is a utility class and cannot be instantiated.");
+    }
+
+    /////////////////
+    // Header
+    ////////////////
+
+    /**
+     * Writes the packet header.
+     *
+     * @param buffer - target buffer.
+     * @param type   - packet type.
+     */
+    public static void putHeader(ByteBuffer buffer, byte type) {
+        buffer.put(PROTOCOL_VERSION);
+        buffer.put(type);
+    }
+
+    /**
+     * Reads the packet header.
+     *
+     * @param buffer - source buffer, positioned at the start of the packet.
+     * @return - packet type, or -1 if the packet is too short or of a different
+     *         protocol version.
+     */
+    public static int readHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < 2 || buffer.get() != PROTOCOL_VERSION) {
+            return -1;
+        }
+        return buffer.get();
+    }
+
+    /////////////////
+    // Client input
+    ////////////////
+
+    /**
+     * Encodes a full client input packet, including the header.
+     *
+     * @param buffer - target buffer.
+     * @param input  - client input.
+     */
+    public static void encodeClientInput(ByteBuffer buffer, ClientInput input) {
+        putHeader(buffer, TYPE_CLIENT_INPUT);
+        VarInt.putVarInt(buffer, input.playerId);
+        VarInt.putVarInt(buffer, input.sequence);
+        VarInt.putVarInt(buffer, input.ackTick);
+        VarInt.putVarInt(buffer, input.eventAck);
+        buffer.put((byte) input.buttons);
+        VarInt.putVarInt(buffer, input.getBulletCount());
+        for (int i = 0; i < input.getBulletCount(); i++) {
+            putBulletBody(buffer, input.getBullet(i));
+        }
+    }
+
+    /**
+     * Reads the player ID of a client input packet, without consuming anything
+     * from the buffer.
+     *
+     * @param buffer - source buffer, positioned at the start of the packet.
+     * @return - player ID, or -1 if it isn't a valid client input packet.
+     */
+    public static int peekPlayerId(ByteBuffer buffer) {
+        int position = buffer.position();
+        try {
+            return readHeader(buffer) == TYPE_CLIENT_INPUT ? VarInt.getVarInt(buffer) : -1;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return -1;
+        } finally {
+            buffer.position(position);
+        }
+    }
+
+    /**
+     * Decodes the body of a client input packet. The header must already be
+     * consumed.
+     *
+     * @param buffer - source buffer.
+     * @param input  - reusable target input.
+     * @throws BufferUnderflowException if the packet is truncated.
+     */
+    public static void decodeClientInput(ByteBuffer buffer, ClientInput input) {
+        input.playerId = VarInt.getVarInt(buffer);
+        input.sequence = VarInt.getVarInt(buffer);
+        input.ackTick = VarInt.getVarInt(buffer);
+        input.eventAck = VarInt.getVarInt(buffer);
+        input.buttons = buffer.get() & 0xFF;
+        input.clearBullets();
+        int bulletCount = VarInt.getVarInt(buffer);
+        for (int i = 0; i < bulletCount; i++) {
+            BulletSpawn spawn = input.addBullet();
+            spawn.ownerId = input.playerId;
+            getBulletBody(buffer, spawn);
+        }
+    }
+
+    /////////////////
+    // Snapshot
+    ////////////////
+
+    /**
+     * Encodes a snapshot packet as a delta against a baseline, including the
+     * header. Bullet events are always sent in full.
+     *
+     * @param buffer   - target buffer.
+     * @param snapshot - snapshot data.
+     * @param baseline - snapshot acknowledged by the client, or {@code null} to
+     *                 send a full snapshot.
+     */
+    public static void encodeSnapshot(ByteBuffer buffer, Snapshot snapshot, Snapshot baseline) {
+        putHeader(buffer, TYPE_SNAPSHOT);
+        VarInt.putVarInt(buffer, snapshot.getTick());
+        VarInt.putVarInt(buffer, baseline == null ? 0 : baseline.getTick());
+        VarInt.putSignedVarInt(buffer, snapshot.getInputAck());
+
+        // Changed players
+        int changed = 0;
+        for (int i = 0; i < snapshot.getPlayerCount(); i++) {
+            if (getChangedFields(snapshot.getPlayer(i), baseline) != 0) {
+                changed++;
+            }
+        }
+        VarInt.putVarInt(buffer, changed);
+        for (int i = 0; i < snapshot.getPlayerCount(); i++) {
+            PlayerState player = snapshot.getPlayer(i);
+            int fields = getChangedFields(player, baseline);
+            if (fields != 0) {
+                VarInt.putVarInt(buffer, player.id);
+                putPlayer(buffer, player, fields);
+            }
+        }
+
+        // Removed players
+        int removed = 0;
+        int baselinePlayers = baseline == null ? 0 : baseline.getPlayerCount();
+        for (int i = 0; i < baselinePlayers; i++) {
+            if (snapshot.findPlayer(baseline.getPlayer(i).id) == null) {
+                removed++;
+            }
+        }
+        VarInt.putVarInt(buffer, removed);
+        for (int i = 0; i < baselinePlayers; i++) {
+            int id = baseline.getPlayer(i).id;
+            if (snapshot.findPlayer(id) == null) {
+                VarInt.putVarInt(buffer, id);
+            }
+        }
+
+        // Bullet events
+        VarInt.putVarInt(buffer, snapshot.getResyncSequence());
+        VarInt.putVarInt(buffer, snapshot.getFirstEventSequence());
+        VarInt.putVarInt(buffer, snapshot.getEventCount());
+        for (int i = 0; i < snapshot.getEventCount(); i++) {
+            BulletSpawn bullet = snapshot.getEvent(i);
+            if (snapshot.isDespawnEvent(i)) {
+                buffer.put(EVENT_DESPAWN);
+                VarInt.putVarInt(buffer, bullet.ownerId);
+                VarInt.putVarInt(buffer, bullet.bulletNum);
+            } else {
+                buffer.put(EVENT_SPAWN);
+                VarInt.putVarInt(buffer, bullet.ownerId);
+                putBulletBody(buffer, bullet);
+            }
+        }
+    }
+
+    /**
+     * Decodes the body of a snapshot packet. The header must already be consumed.
+     *
+     * @param buffer   - source buffer.
+     * @param snapshot - reusable target snapshot, cleared before decoding.
+     * @param history  - previously received snapshots, used to look up the
+     *                 baseline.
+     * @return - false if the baseline of the snapshot is not in the history, and
+     *         the snapshot can't be decoded.
+     * @throws BufferUnderflowException if the packet is truncated.
+     * @throws IllegalArgumentException  if an event is of an unknown type.
+     */
+    public static boolean decodeSnapshot(ByteBuffer buffer, Snapshot snapshot, SnapshotHistory history) {
+        int tick = VarInt.getVarInt(buffer);
+        int baselineTick = VarInt.getVarInt(buffer);
+        int inputAck = VarInt.getSignedVarInt(buffer);
+        Snapshot baseline = history.get(baselineTick);
+        if (baselineTick != 0 && baseline == null) {
+            return false;
+        }
+
+        if (baseline == null) {
+            snapshot.clear();
+        } else {
+            snapshot.copyFrom(baseline);
+        }
+        snapshot.setTick(tick);
+        snapshot.setInputAck(inputAck);
+
+        int changed = VarInt.getVarInt(buffer);
+        for (int i = 0; i < changed; i++) {
+            int id = VarInt.getVarInt(buffer);
+            PlayerState player = snapshot.findPlayer(id);
+            if (player == null) {
+                player = snapshot.addPlayer();
+                player.id = id;
+            }
+            getPlayer(buffer, player);
+        }
+        int removed = VarInt.getVarInt(buffer);
+        for (int i = 0; i < removed; i++) {
+            snapshot.removePlayer(VarInt.getVarInt(buffer));
+        }
+
+        snapshot.setResyncSequence(VarInt.getVarInt(buffer));
+        snapshot.setFirstEventSequence(VarInt.getVarInt(buffer));
+        int events = VarInt.getVarInt(buffer);
+        for (int i = 0; i < events; i++) {
+            byte type = buffer.get();
+            if (type == EVENT_DESPAWN) {
+                snapshot.addDespawnEvent(VarInt.getVarInt(buffer), VarInt.getVarInt(buffer));
+            } else if (type == EVENT_SPAWN) {
+                BulletSpawn bullet = snapshot.addSpawnEvent();
+                bullet.ownerId = VarInt.getVarInt(buffer);
+                getBulletBody(buffer, bullet);
+            } else {
+                throw new IllegalArgumentException("Unknown bullet event type: " + type);
+            }
+        }
+        return true;
+    }
+
+    /////////////////
+    // Fragments
+    ////////////////
+
+    /**
+     * Calculates the number of fragments a packet has to be split into.
+     *
+     * @param packetSize - size of the encoded packet.
+     * @return - fragment count, 1 if the packet fits into a single datagram.
+     */
+    public static int getFragmentCount(int packetSize) {
+        if (packetSize <= MAX_PACKET_SIZE) {
+            return 1;
+        }
+        return (packetSize + FRAGMENT_PAYLOAD_SIZE - 1) / FRAGMENT_PAYLOAD_SIZE;
+    }
+
+    /**
+     * Encodes the next fragment of a packet, including the header. The fragment
+     * data is consumed from the packet buffer.
+     *
+     * @param buffer   - target buffer.
+     * @param sequence - sequence number, shared by all fragments of the packet.
+     * @param index    - fragment index.
+     * @param count    - fragment count.
+     * @param packet   - encoded packet, positioned at the fragment start.
+     */
+    public static void encodeFragment(ByteBuffer buffer, int sequence, int index, int count, ByteBuffer packet) {
+        putHeader(buffer, TYPE_FRAGMENT);
+        VarInt.putVarInt(buffer, sequence);
+        buffer.put((byte) index);
+        buffer.put((byte) count);
+        int limit = packet.limit();
+        packet.limit(Math.min(limit, packet.position() + FRAGMENT_PAYLOAD_SIZE));
+        buffer.put(packet);
+        packet.limit(limit);
+    }
+
+    /////////////////
+    // Private methods
+    ////////////////
+
+    private static int getChangedFields(PlayerState player, Snapshot baseline) {
+        PlayerState old = baseline == null ? null : baseline.findPlayer(player.id);
+        int fields = player.inverted ? FIELD_INVERTED : 0;
+        if (old == null) {
+            return fields | FIELDS_ALL;
+        }
+        if (player.x != old.x)
+            fields |= FIELD_X;
+        if (player.y != old.y)
+            fields |= FIELD_Y;
+        if (player.health != old.health)
+            fields |= FIELD_HEALTH;
+        if (player.animation != old.animation)
+            fields |= FIELD_ANIMATION;
+        if ((fields & FIELDS_ALL) == 0 && player.inverted == old.inverted) {
+            return 0; // Unchanged
+        }
+        return fields;
+    }
+
+    private static void putPlayer(ByteBuffer buffer, PlayerState player, int fields) {
+        buffer.put((byte) fields);
+        if ((fields & FIELD_X) != 0)
+            VarInt.putSignedVarInt(buffer, player.x);
+        if ((fields & FIELD_Y) != 0)
+            VarInt.putSignedVarInt(buffer, player.y);
+        if ((fields & FIELD_HEALTH) != 0)
+            VarInt.putSignedVarInt(buffer, player.health);
+        if ((fields & FIELD_ANIMATION) != 0)
+            buffer.put((byte) player.animation.ordinal());
+    }
+
+    private static void getPlayer(ByteBuffer buffer, PlayerState player) {
+        int fields = buffer.get();
+        if ((fields & FIELD_X) != 0)
+            player.x = VarInt.getSignedVarInt(buffer);
+        if ((fields & FIELD_Y) != 0)
+            player.y = VarInt.getSignedVarInt(buffer);
+        if ((fields & FIELD_HEALTH) != 0)
+            player.health = VarInt.getSignedVarInt(buffer);
+        if ((fields & FIELD_ANIMATION) != 0)
+            player.animation = PlayerState.Animation.fromId(buffer.get());
+        player.inverted = (fields & FIELD_INVERTED) != 0;
+    }
+
+    private static void putBulletBody(ByteBuffer buffer, BulletSpawn spawn) {
+        VarInt.putVarInt(buffer, spawn.bulletNum);
+        VarInt.putSignedVarInt(buffer, spawn.initialX);
+        VarInt.putSignedVarInt(buffer, spawn.initialY);
+        VarInt.putSignedVarInt(buffer, spawn.targetX);
+        VarInt.putSignedVarInt(buffer, spawn.targetY);
+        VarInt.putVarInt(buffer, spawn.decayTime);
+        VarInt.putVarInt(buffer, spawn.velocity);
+        VarInt.putVarInt(buffer, spawn.age);
+    }
+
+    private static void getBulletBody(ByteBuffer buffer, BulletSpawn spawn) {
+        spawn.bulletNum = VarInt.getVarInt(buffer);
+        spawn.initialX = VarInt.getSignedVarInt(buffer);
+        spawn.initialY = VarInt.getSignedVarInt(buffer);
+        spawn.targetX = VarInt.getSignedVarInt(buffer);
+        spawn.targetY = VarInt.getSignedVarInt(buffer);
+        spawn.decayTime = VarInt.getVarInt(buffer);
+        spawn.velocity = VarInt.getVarInt(buffer);
+        spawn.age = VarInt.getVarInt(buffer);
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Author: Matěj Šťastný
+ * Date created: 10/17/2026
+ * Github link: https://github.com/kireiiiiiiii/Flaggi
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package flaggishared.network;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable length integer encoding used by the UDP packets. Unsigned values
+ * use 7 bits per byte (LEB128), signed values are ZigZag encoded first, so
+ * small negative numbers stay short.
+ *
+ */
+public final class VarInt {
+
+    /////////////////
+    // Constants
+    ////////////////
+
+    public static final int MAX_BYTES = 5;
+
+    // Private constructor to prevent instantiation
+    private VarInt() {
+        throw new UnsupportedOperationException("VarInt is a utility class and cannot be instantiated.");
+    }
+
+    /////////////////
+    // Unsigned
+    ////////////////
+
+    /**
+     * Writes an unsigned variable length integer.
+     *
+     * @param buffer - target buffer.
+     * @param value  - value, treated as unsigned.
+     */
+    public static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned variable length integer.
+     *
+     * @param buffer - source buffer.
+     * @return - decoded value.
+     * @throws BufferUnderflowException if the buffer ends mid value.
+     * @throws IllegalArgumentException if the value is longer than 5 bytes.
+     */
+    public static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < MAX_BYTES * 7; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Variable length integer is too long.");
+    }
+
+    /**
+     * Returns the number of bytes an unsigned value takes up.
+     *
+     * @param value - value, treated as unsigned.
+     * @return - encoded size in bytes.
+     */
+    public static int sizeOf(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /////////////////
+    // Signed
+    ////////////////
+
+    /**
+     * Writes a signed, ZigZag encoded variable length integer.
+     *
+     * @param buffer - target buffer.
+     * @param value  - signed value.
+     */
+    public static void putSignedVarInt(ByteBuffer buffer, int value) {
+        putVarInt(buffer, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Reads a signed, ZigZag encoded variable length integer.
+     *
+     * @param buffer - source buffer.
+     * @return - decoded value.
+     */
+    public static int getSignedVarInt(ByteBuffer buffer) {
+        int raw = getVarInt(buffer);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+}